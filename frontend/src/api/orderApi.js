@@ -2,11 +2,14 @@ import axios from './axiosConfig';
 
 export const orderApi = {
   // Buyer endpoints
-  createOrder: (data) => axios.post('/buyer/orders', data),
+  createOrder: (data, idempotencyKey) => axios.post('/buyer/orders', data,
+    idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined),
+  checkout: (data, idempotencyKey) => axios.post('/buyer/checkout', data,
+    idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined),
   getBuyerOrders: (status) => axios.get('/buyer/orders', { params: { status } }),
   getBuyerOrderById: (id) => axios.get(`/buyer/orders/${id}`),
   cancelOrder: (id) => axios.put(`/buyer/orders/${id}/cancel`),
-  getOrderHistory: () => axios.get('/buyer/order-history'),
+  getOrderHistory: (params) => axios.get('/buyer/order-history', { params }),
   getPendingOrders: () => axios.get('/buyer/orders/pending'),
   getBuyerStats: () => axios.get('/buyer/stats'),
   
@@ -16,9 +19,11 @@ export const orderApi = {
   // ✅ FIXED: This should call /farmer/orders/{id} for farmers
   getFarmerOrderById: (id) => axios.get(`/farmer/orders/${id}`),
 
-  confirmOrder: (id) => axios.put(`/farmer/orders/${id}/confirm`),
+  confirmOrder: (id) => axios.put(`/farmer/orders/${id}/confirm`, null, { params: { return: 'minimal' } }),
   rejectOrder: (id) => axios.put(`/farmer/orders/${id}/reject`),
-  completeOrder: (id) => axios.put(`/farmer/orders/${id}/complete`),
-  getSalesHistory: () => axios.get('/farmer/sales-history'),
+  completeOrder: (id) => axios.put(`/farmer/orders/${id}/complete`, null, { params: { return: 'minimal' } }),
+  bulkOrderAction: (action, body) => axios.put(`/farmer/orders/bulk/${action}`, body),
+  getSalesHistory: (params) => axios.get('/farmer/sales-history', { params }),
+  exportSales: (params) => axios.get('/farmer/orders/export', { params, responseType: 'blob' }),
   getFarmerStats: () => axios.get('/farmer/stats'),
 };
\ No newline at end of file
@@ -4,7 +4,10 @@ export const productApi = {
   // Public endpoints
   getAllProducts: (params) => axios.get('/products', { params }),
   getProductById: (id) => axios.get(`/products/${id}`),
+  getProductsByIds: (ids) => axios.get('/products', { params: { ids: ids.join(',') } }),
   getProductsByFarmer: (farmerId) => axios.get(`/products/farmer/${farmerId}`),
+  getTrendingProducts: (params) => axios.get('/products/trending', { params }),
+  getAlsoBought: (id, limit) => axios.get(`/products/${id}/also-bought`, { params: { limit } }),
 
   // Farmer endpoints
   createProduct: (data) => axios.post('/farmer/products', data),
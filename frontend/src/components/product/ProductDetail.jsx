@@ -1,9 +1,19 @@
 // ProductDetail.jsx
-import React from 'react';
+import React, { useState, useEffect } from 'react';
+import { productApi } from '../../api/productApi';
 import { formatCurrency } from '../../utils/helpers';
 import './ProductDetail.css';
 
 const ProductDetail = ({ product, onAddToCart, onEdit, onDelete }) => {
+  const [alsoBought, setAlsoBought] = useState([]);
+
+  useEffect(() => {
+    if (!product) return;
+    productApi.getAlsoBought(product.id, 4)
+      .then(response => setAlsoBought(response.data))
+      .catch(() => setAlsoBought([]));
+  }, [product?.id]);
+
   if (!product) {
     return <p>Product not found.</p>;
   }
@@ -20,6 +30,21 @@ const ProductDetail = ({ product, onAddToCart, onEdit, onDelete }) => {
           {onEdit && <button onClick={() => onEdit(product.id)} className="btn btn-secondary">Edit</button>}
           {onDelete && <button onClick={() => onDelete(product.id)} className="btn btn-danger">Delete</button>}
         </div>
+        {alsoBought.length > 0 && (
+          <div className="product-detail-also-bought">
+            <h3>Buyers also ordered</h3>
+            <ul>
+              {alsoBought.map(item => (
+                <li key={item.id}>
+                  <span>{item.name} – {formatCurrency(item.price)}</span>
+                  {onAddToCart && (
+                    <button onClick={() => onAddToCart(item)} className="btn btn-secondary">Add</button>
+                  )}
+                </li>
+              ))}
+            </ul>
+          </div>
+        )}
       </div>
     </div>
   );
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { productApi } from '../../api/productApi';
 import { orderApi } from '../../api/orderApi';
@@ -10,6 +10,8 @@ import './BrowseProducts.css';
 
 const BrowseProducts = () => {
   const [products, setProducts] = useState([]);
+  // One idempotency key per cart, reused when the buyer retries a failed checkout
+  const checkoutKeys = useRef({});
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState('');
   const [cart, setCart] = useState([]);
@@ -23,7 +25,7 @@ const BrowseProducts = () => {
   const fetchProducts = async () => {
     try {
       const response = await productApi.getAllProducts();
-      setProducts(response.data);
+      setProducts(response.data.items);
     } catch (err) {
       setError('Failed to load products');
     } finally {
@@ -77,38 +79,25 @@ const BrowseProducts = () => {
     return cart.reduce((total, item) => total + (item.price * item.quantity), 0);
   };
 
-  const groupCartByFarmer = () => {
-    const grouped = {};
-    cart.forEach(item => {
-      if (!grouped[item.farmerId]) {
-        grouped[item.farmerId] = {
-          farmerId: item.farmerId,
-          farmerName: item.farmerName,
-          items: []
-        };
-      }
-      grouped[item.farmerId].items.push(item);
-    });
-    return Object.values(grouped);
-  };
-
   const handleCheckout = async () => {
     if (cart.length === 0) return;
 
-    const farmerGroups = groupCartByFarmer();
+    // The whole cart is placed in one request: one order per farmer, all or nothing
+    const checkoutData = {
+      items: cart.map(item => ({
+        productId: item.productId,
+        quantity: item.quantity
+      }))
+    };
+    const signature = JSON.stringify(checkoutData);
+    if (!checkoutKeys.current[signature]) {
+      checkoutKeys.current[signature] = crypto.randomUUID();
+    }
     
     try {
-      for (const group of farmerGroups) {
-        const orderData = {
-          farmerId: group.farmerId,
-          items: group.items.map(item => ({
-            productId: item.productId,
-            quantity: item.quantity
-          }))
-        };
-        await orderApi.createOrder(orderData);
-      }
+      await orderApi.checkout(checkoutData, checkoutKeys.current[signature]);
       
+      checkoutKeys.current = {};
       alert('Orders placed successfully!');
       setCart([]);
       setShowCart(false);
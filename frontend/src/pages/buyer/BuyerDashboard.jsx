@@ -1,19 +1,33 @@
 import React, { useState, useEffect } from 'react';
 import { Link } from 'react-router-dom';
 import { orderApi } from '../../api/orderApi';
+import { productApi } from '../../api/productApi';
 import Loading from '../../components/common/Loading';
+import ProductCard from '../../components/product/ProductCard';
 import { formatCurrency } from '../../utils/helpers';
 import './BuyerDashboard.css';
 
 const BuyerDashboard = () => {
   const [stats, setStats] = useState(null);
+  const [trending, setTrending] = useState([]);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState('');
 
   useEffect(() => {
     fetchStats();
+    fetchTrending();
   }, []);
 
+  const fetchTrending = async () => {
+    try {
+      const response = await productApi.getTrendingProducts({ limit: 8 });
+      setTrending(response.data);
+    } catch (err) {
+      // The rail is optional; the dashboard works without it
+      setTrending([]);
+    }
+  };
+
   const fetchStats = async () => {
     try {
       const response = await orderApi.getBuyerStats();
@@ -84,6 +98,17 @@ const BuyerDashboard = () => {
         </div>
       </div>
 
+      {trending.length > 0 && (
+        <div className="dashboard-actions">
+          <h2 className="section-title">Trending Near You</h2>
+          <div className="grid grid-3">
+            {trending.map(product => (
+              <ProductCard key={product.id} product={product} showActions={false} />
+            ))}
+          </div>
+        </div>
+      )}
+
       <div className="dashboard-actions">
         <h2 className="section-title">Quick Actions</h2>
         <div className="actions-grid">
@@ -6,7 +6,11 @@ import { formatCurrency } from '../../utils/helpers';
 
 const SalesHistory = () => {
   const [orders, setOrders] = useState([]);
+  const [stats, setStats] = useState({ completedOrders: 0, totalRevenue: 0 });
+  const [nextCursor, setNextCursor] = useState(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
+  const [exporting, setExporting] = useState(false);
   const [error, setError] = useState('');
 
   useEffect(() => {
@@ -15,8 +19,13 @@ const SalesHistory = () => {
 
   const fetchSalesHistory = async () => {
     try {
-      const response = await orderApi.getSalesHistory();
-      setOrders(response.data);
+      const [historyResponse, statsResponse] = await Promise.all([
+        orderApi.getSalesHistory(),
+        orderApi.getFarmerStats(),
+      ]);
+      setOrders(historyResponse.data.items);
+      setNextCursor(historyResponse.data.nextCursor);
+      setStats(statsResponse.data);
     } catch (err) {
       setError('Failed to load sales history');
     } finally {
@@ -24,24 +33,57 @@ const SalesHistory = () => {
     }
   };
 
-  const totalRevenue = orders.reduce((sum, order) => sum + parseFloat(order.totalAmount), 0);
+  const loadMore = async () => {
+    setLoadingMore(true);
+    try {
+      const response = await orderApi.getSalesHistory({ cursor: nextCursor });
+      setOrders(prev => [...prev, ...response.data.items]);
+      setNextCursor(response.data.nextCursor);
+    } catch (err) {
+      setError('Failed to load more sales');
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  const exportCsv = async () => {
+    setExporting(true);
+    try {
+      const response = await orderApi.exportSales({ format: 'csv', status: 'COMPLETED' });
+      const url = URL.createObjectURL(response.data);
+      const link = document.createElement('a');
+      link.href = url;
+      link.download = `sales-${new Date().toISOString().slice(0, 10)}.csv`;
+      link.click();
+      URL.revokeObjectURL(url);
+    } catch (err) {
+      setError('Failed to export sales');
+    } finally {
+      setExporting(false);
+    }
+  };
 
   if (loading) return <Loading />;
 
   return (
     <div className="container">
-      <h1>Sales History</h1>
+      <div className="flex-between">
+        <h1>Sales History</h1>
+        <button onClick={exportCsv} className="btn btn-secondary" disabled={exporting}>
+          {exporting ? 'Exporting...' : 'Export CSV'}
+        </button>
+      </div>
 
       <div className="card mb-2">
         <div className="flex-between">
           <div>
             <h3>Total Completed Sales</h3>
-            <p>{orders.length} orders</p>
+            <p>{stats.completedOrders} orders</p>
           </div>
           <div style={{ textAlign: 'right' }}>
             <h3>Total Revenue</h3>
             <p style={{ fontSize: '1.5rem', color: '#28a745', fontWeight: 'bold' }}>
-              {formatCurrency(totalRevenue)}
+              {formatCurrency(stats.totalRevenue)}
             </p>
           </div>
         </div>
@@ -54,11 +96,20 @@ const SalesHistory = () => {
           <p>No completed sales yet</p>
         </div>
       ) : (
-        <div className="grid grid-2">
-          {orders.map(order => (
-            <OrderCard key={order.id} order={order} userRole="FARMER" />
-          ))}
-        </div>
+        <>
+          <div className="grid grid-2">
+            {orders.map(order => (
+              <OrderCard key={order.id} order={order} userRole="FARMER" />
+            ))}
+          </div>
+          {nextCursor && (
+            <div className="text-center mt-2">
+              <button onClick={loadMore} className="btn btn-secondary" disabled={loadingMore}>
+                {loadingMore ? 'Loading...' : 'Load more'}
+              </button>
+            </div>
+          )}
+        </>
       )}
     </div>
   );
@@ -5,7 +5,8 @@ export const ORDER_STATUS = {
   CONFIRMED: 'CONFIRMED',
   REJECTED: 'REJECTED',
   CANCELLED: 'CANCELLED',
-  COMPLETED: 'COMPLETED'
+  COMPLETED: 'COMPLETED',
+  EXPIRED: 'EXPIRED'
 };
 
 export const ORDER_STATUS_LABELS = {
@@ -13,7 +14,8 @@ export const ORDER_STATUS_LABELS = {
   CONFIRMED: 'Confirmed',
   REJECTED: 'Rejected',
   CANCELLED: 'Cancelled',
-  COMPLETED: 'Completed'
+  COMPLETED: 'Completed',
+  EXPIRED: 'Expired'
 };
 
 export const ORDER_STATUS_COLORS = {
@@ -21,7 +23,8 @@ export const ORDER_STATUS_COLORS = {
   CONFIRMED: 'info',
   REJECTED: 'danger',
   CANCELLED: 'secondary',
-  COMPLETED: 'success'
+  COMPLETED: 'success',
+  EXPIRED: 'secondary'
 };
 
 export const ROLES = {
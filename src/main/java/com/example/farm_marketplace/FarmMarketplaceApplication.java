@@ -2,8 +2,10 @@ package com.example.farm_marketplace;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FarmMarketplaceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,35 @@
+package com.example.farm_marketplace.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Lets a single endpoint run its async response (e.g. a StreamingResponseBody) longer
+ * than spring.mvc.async.request-timeout: the handler stores the timeout in milliseconds
+ * as the {@link #TIMEOUT_ATTRIBUTE} request attribute, and it is applied just before
+ * async processing starts.
+ */
+@Configuration
+public class AsyncTimeoutConfig implements WebMvcConfigurer {
+    public static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutConfig.class.getName() + ".timeout";
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest
+                        && request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Long timeout) {
+                    asyncRequest.setTimeout(timeout);
+                }
+            }
+        });
+    }
+}
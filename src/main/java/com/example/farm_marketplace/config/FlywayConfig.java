@@ -0,0 +1,34 @@
+package com.example.farm_marketplace.config;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+/**
+ * Tables are created and extended by Hibernate (ddl-auto=update), so the Flyway
+ * migrations in db/migration change what Hibernate cannot: constraints it never
+ * rewrites and indexes it cannot express. They run once the EntityManagerFactory
+ * has updated the schema, instead of before it as Spring Boot does by default.
+ */
+@Configuration
+public class FlywayConfig {
+
+    /**
+     * Boot's own initializer runs before Hibernate; leave the work to migrateAfterHibernate
+     */
+    @Bean
+    public FlywayMigrationStrategy deferredMigrationStrategy() {
+        return flyway -> {
+        };
+    }
+
+    @Bean
+    @DependsOn("entityManagerFactory")
+    public InitializingBean migrateAfterHibernate(ObjectProvider<Flyway> flyway) {
+        return () -> flyway.ifAvailable(Flyway::migrate);
+    }
+}
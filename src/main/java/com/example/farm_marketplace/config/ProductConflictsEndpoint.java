@@ -0,0 +1,27 @@
+package com.example.farm_marketplace.config;
+
+import com.example.farm_marketplace.service.ConflictRetryExecutor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator view of the products that most often lose concurrent update races
+ * GET /actuator/productconflicts  (ADMIN role only)
+ */
+@Component
+@Endpoint(id = "productconflicts")
+@RequiredArgsConstructor
+public class ProductConflictsEndpoint {
+    private static final int TOP_PRODUCTS = 50;
+
+    private final ConflictRetryExecutor conflictRetryExecutor;
+
+    @ReadOperation
+    public Map<Long, Long> conflicts() {
+        return conflictRetryExecutor.getConflictCounts(TOP_PRODUCTS);
+    }
+}
@@ -29,10 +29,15 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/products").permitAll()
+                        .requestMatchers("/api/products/batch").permitAll()
+                        .requestMatchers("/api/products/changes").permitAll()
+                        .requestMatchers("/api/products/trending").permitAll()
                         .requestMatchers("/api/products/{id}").permitAll()
+                        .requestMatchers("/api/products/{id}/also-bought").permitAll()
                         .requestMatchers("/uploads/**").permitAll()
                         .requestMatchers("/api/farmer/**").hasRole("FARMER")
                         .requestMatchers("/api/buyer/**").hasRole("BUYER")
+                        .requestMatchers("/actuator/productconflicts/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -1,15 +1,26 @@
 package com.example.farm_marketplace.controller;
 
+import com.example.farm_marketplace.config.AsyncTimeoutConfig;
+import com.example.farm_marketplace.dto.CheckoutRequest;
+import com.example.farm_marketplace.dto.CheckoutResponse;
+import com.example.farm_marketplace.dto.CursorPage;
 import com.example.farm_marketplace.dto.OrderRequest;
 import com.example.farm_marketplace.dto.OrderResponse;
+import com.example.farm_marketplace.service.OrderExportService;
 import com.example.farm_marketplace.service.OrderService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 @RestController
@@ -19,30 +30,48 @@ import java.util.Map;
 public class BuyerController {
 
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
     /**
-     * Create a new order
+     * Create a new order; retries carrying the same Idempotency-Key get the first response back
      * POST /api/buyer/orders
      */
     @PostMapping("/orders")
     public ResponseEntity<OrderResponse> createOrder(
             Authentication authentication,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody OrderRequest request) {
         String email = authentication.getName();
-        OrderResponse response = orderService.createOrder(email, request);
+        OrderResponse response = orderService.createOrder(email, request, idempotencyKey);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
     /**
-     * Get all orders placed by buyer
-     * GET /api/buyer/orders
+     * Check out a cart with products of several farmers: one order per farmer, all or nothing
+     * POST /api/buyer/checkout
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<CheckoutResponse> checkout(
+            Authentication authentication,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody CheckoutRequest request) {
+        String email = authentication.getName();
+        CheckoutResponse response = orderService.checkout(email, request, idempotencyKey);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Get orders placed by buyer, newest first, one page at a time
+     * GET /api/buyer/orders?status=PENDING&cursor={nextCursor}&limit=20
      */
     @GetMapping("/orders")
-    public ResponseEntity<List<OrderResponse>> getMyOrders(
+    public ResponseEntity<CursorPage<OrderResponse>> getMyOrders(
             Authentication authentication,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         String email = authentication.getName();
-        List<OrderResponse> orders = orderService.getBuyerOrders(email, status);
+        CursorPage<OrderResponse> orders = orderService.getBuyerOrderPage(email, status, null, null, cursor, limit);
         return ResponseEntity.ok(orders);
     }
 
@@ -73,24 +102,59 @@ public class BuyerController {
     }
 
     /**
-     * Get order history (all past orders)
-     * GET /api/buyer/order-history
+     * Download order history as CSV or JSON lines, one line per order item, streamed without paging
+     * GET /api/buyer/orders/export?format=csv&status=COMPLETED&from=2024-01-01T00:00:00&to=...&gzip=true
+     */
+    @GetMapping("/orders/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            Authentication authentication,
+            HttpServletRequest request,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        String email = authentication.getName();
+        OrderExportService.Format exportFormat = OrderExportService.Format.fromParam(format);
+        StreamingResponseBody body = orderExportService.export(
+                email, OrderExportService.Side.BUYER, exportFormat, gzip, status, from, to);
+        request.setAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE, orderExportService.timeoutMillis());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(orderExportService.filename(OrderExportService.Side.BUYER, exportFormat, gzip))
+                        .build().toString())
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.contentType()))
+                .body(body);
+    }
+
+    /**
+     * Get order history, newest first, one page at a time
+     * GET /api/buyer/order-history?status=COMPLETED&from=2024-01-01T00:00:00&to=...&cursor=...&limit=20
      */
     @GetMapping("/order-history")
-    public ResponseEntity<List<OrderResponse>> getOrderHistory(Authentication authentication) {
+    public ResponseEntity<CursorPage<OrderResponse>> getOrderHistory(
+            Authentication authentication,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         String email = authentication.getName();
-        List<OrderResponse> orders = orderService.getBuyerOrders(email, null);
-        return ResponseEntity.ok(orders);
+        CursorPage<OrderResponse> page = orderService.getBuyerOrderPage(email, status, from, to, cursor, limit);
+        return ResponseEntity.ok(page);
     }
 
     /**
-     * Get pending orders
-     * GET /api/buyer/orders/pending
+     * Get pending orders, newest first, one page at a time
+     * GET /api/buyer/orders/pending?cursor={nextCursor}&limit=20
      */
     @GetMapping("/orders/pending")
-    public ResponseEntity<List<OrderResponse>> getPendingOrders(Authentication authentication) {
+    public ResponseEntity<CursorPage<OrderResponse>> getPendingOrders(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         String email = authentication.getName();
-        List<OrderResponse> orders = orderService.getBuyerOrders(email, "PENDING");
+        CursorPage<OrderResponse> orders = orderService.getBuyerOrderPage(email, "PENDING", null, null, cursor, limit);
         return ResponseEntity.ok(orders);
     }
 
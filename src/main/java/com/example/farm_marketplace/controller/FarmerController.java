@@ -1,17 +1,40 @@
 package com.example.farm_marketplace.controller;
 
+import com.example.farm_marketplace.config.AsyncTimeoutConfig;
+import com.example.farm_marketplace.dto.BulkOrderActionRequest;
+import com.example.farm_marketplace.dto.BulkOrderActionResponse;
+import com.example.farm_marketplace.dto.CursorPage;
 import com.example.farm_marketplace.dto.OrderResponse;
+import com.example.farm_marketplace.dto.ProductImportResponse;
 import com.example.farm_marketplace.dto.ProductRequest;
 import com.example.farm_marketplace.dto.ProductResponse;
+import com.example.farm_marketplace.dto.SalesAnalyticsResponse;
+import com.example.farm_marketplace.service.OrderBulkService;
+import com.example.farm_marketplace.service.OrderExportService;
 import com.example.farm_marketplace.service.OrderService;
+import com.example.farm_marketplace.service.ProductImportService;
 import com.example.farm_marketplace.service.ProductService;
+import com.example.farm_marketplace.service.SalesAnalyticsService;
+import com.example.farm_marketplace.util.ETags;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -22,7 +45,12 @@ import java.util.Map;
 public class FarmerController {
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
     private final OrderService orderService;
+    private final ProductImportService productImportService;
+    private final OrderBulkService orderBulkService;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final OrderExportService orderExportService;
 
     /**
      * Create a new product
@@ -37,6 +65,24 @@ public class FarmerController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Bulk create or update products from a CSV (with header row) or JSON-lines body.
+     * Rows are matched to existing products by name; invalid rows are reported, not fatal.
+     * POST /api/farmer/products/import
+     */
+    @PostMapping(value = "/products/import",
+            consumes = {"text/csv", "application/x-ndjson", "application/jsonl"})
+    public ResponseEntity<ProductImportResponse> importProducts(
+            Authentication authentication,
+            HttpServletRequest request) throws IOException {
+        String email = authentication.getName();
+        ProductImportResponse response = productImportService.importProducts(
+                email,
+                request.getInputStream(),
+                ProductImportService.Format.fromContentType(request.getContentType()));
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Get all products for logged-in farmer
      * GET /api/farmer/products
@@ -55,10 +101,22 @@ public class FarmerController {
     @GetMapping("/products/{id}")
     public ResponseEntity<ProductResponse> getProductById(
             Authentication authentication,
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         String email = authentication.getName();
         ProductResponse response = productService.getFarmerProductById(email, id);
-        return ResponseEntity.ok(response);
+        String etag = ETags.forBody(objectMapper, response);
+
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(response);
     }
 
     /**
@@ -75,6 +133,20 @@ public class FarmerController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Upload product image (stored under its content hash)
+     * POST /api/farmer/products/{id}/image
+     */
+    @PostMapping("/products/{id}/image")
+    public ResponseEntity<ProductResponse> uploadProductImage(
+            Authentication authentication,
+            @PathVariable Long id,
+            @RequestParam("file") MultipartFile file) {
+        String email = authentication.getName();
+        ProductResponse response = productService.updateProductImage(email, id, file);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Delete product
      * DELETE /api/farmer/products/{id}
@@ -89,15 +161,17 @@ public class FarmerController {
     }
 
     /**
-     * Get all orders received by farmer
-     * GET /api/farmer/orders
+     * Get orders received by farmer, newest first, one page at a time
+     * GET /api/farmer/orders?status=PENDING&cursor={nextCursor}&limit=20
      */
     @GetMapping("/orders")
-    public ResponseEntity<List<OrderResponse>> getReceivedOrders(
+    public ResponseEntity<CursorPage<OrderResponse>> getReceivedOrders(
             Authentication authentication,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         String email = authentication.getName();
-        List<OrderResponse> orders = orderService.getFarmerOrders(email, status);
+        CursorPage<OrderResponse> orders = orderService.getFarmerOrderPage(email, status, null, null, cursor, limit);
         return ResponseEntity.ok(orders);
     }
 
@@ -115,16 +189,18 @@ public class FarmerController {
     }
 
     /**
-     * Confirm an order
-     * PUT /api/farmer/orders/{id}/confirm
+     * Confirm an order; with return=minimal only the status code is sent back
+     * PUT /api/farmer/orders/{id}/confirm?return=minimal
      */
     @PutMapping("/orders/{id}/confirm")
     public ResponseEntity<OrderResponse> confirmOrder(
             Authentication authentication,
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            @RequestParam(name = "return", required = false) String returnPreference) {
         String email = authentication.getName();
-        OrderResponse response = orderService.confirmOrder(email, id);
-        return ResponseEntity.ok(response);
+        boolean minimal = isMinimal(returnPreference);
+        OrderResponse response = orderService.confirmOrder(email, id, minimal);
+        return minimal ? ResponseEntity.noContent().build() : ResponseEntity.ok(response);
     }
 
     /**
@@ -141,27 +217,93 @@ public class FarmerController {
     }
 
     /**
-     * Complete an order
-     * PUT /api/farmer/orders/{id}/complete
+     * Complete an order; with return=minimal only the status code is sent back
+     * PUT /api/farmer/orders/{id}/complete?return=minimal
      */
     @PutMapping("/orders/{id}/complete")
     public ResponseEntity<OrderResponse> completeOrder(
             Authentication authentication,
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            @RequestParam(name = "return", required = false) String returnPreference) {
         String email = authentication.getName();
-        OrderResponse response = orderService.completeOrder(email, id);
+        boolean minimal = isMinimal(returnPreference);
+        OrderResponse response = orderService.completeOrder(email, id, minimal);
+        return minimal ? ResponseEntity.noContent().build() : ResponseEntity.ok(response);
+    }
+
+    /**
+     * Confirm, reject or complete many orders at once, by ids or all in the
+     * source status created before a time; returns the outcome per order
+     * PUT /api/farmer/orders/bulk/{action}  (action: confirm | reject | complete)
+     */
+    @PutMapping("/orders/bulk/{action}")
+    public ResponseEntity<BulkOrderActionResponse> bulkOrderAction(
+            Authentication authentication,
+            @PathVariable String action,
+            @RequestBody BulkOrderActionRequest request) {
+        String email = authentication.getName();
+        BulkOrderActionResponse response = orderBulkService.apply(
+                email, OrderBulkService.Action.fromPath(action), request);
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Get sales history (completed orders)
-     * GET /api/farmer/sales-history
+     * Revenue and quantity per product in day, week or month buckets over a date range
+     * GET /api/farmer/analytics/sales?granularity=week&from=2024-01-01&to=2024-12-31&productId=5
+     */
+    @GetMapping("/analytics/sales")
+    public ResponseEntity<SalesAnalyticsResponse> getSalesAnalytics(
+            Authentication authentication,
+            @RequestParam(required = false) String granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long productId) {
+        String email = authentication.getName();
+        SalesAnalyticsResponse response = salesAnalyticsService.getSales(
+                email, SalesAnalyticsService.Granularity.fromParam(granularity), from, to, productId);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Download sales as CSV or JSON lines, one line per order item, streamed without paging
+     * GET /api/farmer/orders/export?format=csv&status=COMPLETED&from=2024-01-01T00:00:00&to=...&gzip=true
+     */
+    @GetMapping("/orders/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            Authentication authentication,
+            HttpServletRequest request,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        String email = authentication.getName();
+        OrderExportService.Format exportFormat = OrderExportService.Format.fromParam(format);
+        StreamingResponseBody body = orderExportService.export(
+                email, OrderExportService.Side.FARMER, exportFormat, gzip, status, from, to);
+        request.setAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE, orderExportService.timeoutMillis());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(orderExportService.filename(OrderExportService.Side.FARMER, exportFormat, gzip))
+                        .build().toString())
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.contentType()))
+                .body(body);
+    }
+
+    /**
+     * Get sales history (completed orders), newest first, one page at a time
+     * GET /api/farmer/sales-history?from=2024-01-01T00:00:00&to=...&cursor=...&limit=20
      */
     @GetMapping("/sales-history")
-    public ResponseEntity<List<OrderResponse>> getSalesHistory(Authentication authentication) {
+    public ResponseEntity<CursorPage<OrderResponse>> getSalesHistory(
+            Authentication authentication,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         String email = authentication.getName();
-        List<OrderResponse> orders = orderService.getFarmerOrders(email, "COMPLETED");
-        return ResponseEntity.ok(orders);
+        CursorPage<OrderResponse> page = orderService.getFarmerOrderPage(email, "COMPLETED", from, to, cursor, limit);
+        return ResponseEntity.ok(page);
     }
 
     /**
@@ -174,4 +316,8 @@ public class FarmerController {
         Map<String, Object> stats = orderService.getFarmerStats(email);
         return ResponseEntity.ok(stats);
     }
-}
\ No newline at end of file
+
+    private static boolean isMinimal(String returnPreference) {
+        return "minimal".equalsIgnoreCase(returnPreference);
+    }
+}
@@ -1,9 +1,26 @@
 package com.example.farm_marketplace.controller;
 
+import com.example.farm_marketplace.dto.CursorPage;
+import com.example.farm_marketplace.dto.ProductBatchRequest;
+import com.example.farm_marketplace.dto.ProductBatchResponse;
+import com.example.farm_marketplace.dto.ProductChangesResponse;
 import com.example.farm_marketplace.dto.ProductResponse;
+import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.service.AlsoBoughtService;
+import com.example.farm_marketplace.service.ProductChangeFeedService;
 import com.example.farm_marketplace.service.ProductService;
+import com.example.farm_marketplace.service.TrendingService;
+import com.example.farm_marketplace.service.UserService;
+import com.example.farm_marketplace.util.ETags;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
@@ -14,32 +31,126 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final ProductChangeFeedService changeFeedService;
+    private final TrendingService trendingService;
+    private final AlsoBoughtService alsoBoughtService;
+    private final UserService userService;
 
     /**
-     * Get all available products (for buyers to browse)
-     * GET /api/products
+     * Get available products one page at a time (for buyers to browse),
+     * optionally filtered by search text and farmer state/district
+     * GET /api/products?search=tomato&state=...&district=...&cursor={nextCursor}&limit=20
      */
     @GetMapping
-    public ResponseEntity<List<ProductResponse>> getAllProducts(
+    public ResponseEntity<CursorPage<ProductResponse>> getAllProducts(
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String state,
-            @RequestParam(required = false) String district) {
-        List<ProductResponse> products = productService.getAllAvailableProducts();
+            @RequestParam(required = false) String district,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        boolean filtered = hasText(search) || hasText(state) || hasText(district);
+        CursorPage<ProductResponse> products = filtered
+                ? productService.searchProducts(search, state, district, cursor, limit)
+                : productService.getAvailableProductsPage(cursor, limit);
 
-        // Optional: implement filtering logic here
-        // For now, return all products
+        return ResponseEntity.ok(products);
+    }
 
+    /**
+     * Products ordered most in a district recently (falling back to its state);
+     * without a location the signed-in user's own district is used
+     * GET /api/products/trending?state=...&district=...&limit=10
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<ProductResponse>> getTrendingProducts(
+            Authentication authentication,
+            @RequestParam(required = false) String state,
+            @RequestParam(required = false) String district,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (!hasText(state) && authentication != null
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            User user = userService.findByEmail(authentication.getName());
+            state = user.getState();
+            district = user.getDistrict();
+        }
+        List<Long> ids = trendingService.trendingProductIds(state, district, limit);
+        List<ProductResponse> products = ids.isEmpty()
+                ? List.of()
+                : productService.getProductsByIds(ids).getProducts().stream()
+                        .filter(product -> Boolean.TRUE.equals(product.getActive()))
+                        .toList();
         return ResponseEntity.ok(products);
     }
 
     /**
-     * Get product details by ID
+     * Get several products by ID in one round trip, in request order
+     * GET /api/products?ids=3,1,2
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<ProductBatchResponse> getProductsByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
+    }
+
+    /**
+     * Same as the ids query, for id lists too long for a URL
+     * POST /api/products/batch
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ProductBatchResponse> getProductsByIdsBatch(@Valid @RequestBody ProductBatchRequest request) {
+        return ResponseEntity.ok(productService.getProductsByIds(request.getIds()));
+    }
+
+    /**
+     * Get catalog changes since a previous call; pass nextToken back as since.
+     * Keep calling while hasMore is true; without since the whole catalog is returned in pages.
+     * GET /api/products/changes?since={nextToken}&limit=100
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ProductChangesResponse> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(changeFeedService.getChanges(since, limit));
+    }
+
+    /**
+     * Products most often ordered together with this one, still available
+     * GET /api/products/{id}/also-bought?limit=6
+     */
+    @GetMapping("/{id}/also-bought")
+    public ResponseEntity<List<ProductResponse>> getAlsoBought(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "6") int limit) {
+        List<Long> ids = alsoBoughtService.alsoBoughtIds(id, limit);
+        List<ProductResponse> products = ids.isEmpty()
+                ? List.of()
+                : productService.getProductsByIds(ids).getProducts().stream()
+                        .filter(product -> Boolean.TRUE.equals(product.getActive()))
+                        .toList();
+        return ResponseEntity.ok(products);
+    }
+
+    /**
+     * Get product details by ID, answering 304 when the client's ETag is current
      * GET /api/products/{id}
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponse> getProduct(@PathVariable Long id) {
+    public ResponseEntity<ProductResponse> getProduct(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         ProductResponse response = productService.getProductById(id);
-        return ResponseEntity.ok(response);
+        String etag = ETags.forBody(objectMapper, response);
+
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(response);
     }
 
     /**
@@ -51,4 +162,8 @@ public class ProductController {
         List<ProductResponse> products = productService.getProductsByFarmerId(farmerId);
         return ResponseEntity.ok(products);
     }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
 }
@@ -0,0 +1,206 @@
+package com.example.farm_marketplace.controller;
+
+import com.example.farm_marketplace.exception.ResourceNotFoundException;
+import com.example.farm_marketplace.service.ImageDerivativeService;
+import com.example.farm_marketplace.service.ImageStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves uploaded images straight from disk.
+ * Where the connector supports it the file is handed to the container's sendfile,
+ * otherwise it is streamed with FileChannel.transferTo; single byte ranges are honoured.
+ */
+@RestController
+@RequestMapping("/uploads")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class UploadController {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, max-age=3600";
+    private static final String SHORT_LIVED = "public, max-age=60";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif");
+
+    private final ImageStorageService imageStorageService;
+    private final ImageDerivativeService imageDerivativeService;
+
+    /**
+     * Serve an uploaded file
+     * GET /uploads/{filename}
+     */
+    @GetMapping("/{filename:.+}")
+    public void serveFile(
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Path file = imageStorageService.resolve(filename);
+        boolean immutable = imageStorageService.isContentAddressed(filename);
+        serve(file, immutable ? IMMUTABLE : REVALIDATE, request, response);
+    }
+
+    /**
+     * Serve a resized derivative of an uploaded image, falling back to the original
+     * (with a short cache lifetime) while the derivative is being generated
+     * GET /uploads/derivatives/{variant}/{filename}
+     */
+    @GetMapping("/derivatives/{variant}/{filename:.+}")
+    public void serveDerivative(
+            @PathVariable String variant,
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        ImageDerivativeService.Variant size = ImageDerivativeService.Variant.fromKey(variant)
+                .orElseThrow(() -> new ResourceNotFoundException("File not found"));
+        Path original = imageStorageService.resolve(filename);
+
+        Path derivative = imageDerivativeService.find(filename, size);
+        if (derivative == null) {
+            serve(original, SHORT_LIVED, request, response);
+            return;
+        }
+        boolean immutable = imageStorageService.isContentAddressed(filename);
+        try {
+            serve(derivative, immutable ? IMMUTABLE : REVALIDATE, request, response);
+        } catch (NoSuchFileException e) {
+            // Evicted after it was found: serve the original as for a miss
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            serve(original, SHORT_LIVED, request, response);
+        }
+    }
+
+    /**
+     * Write a file (or the requested byte range of it) to the response
+     */
+    private static void serve(Path file, String cacheControl, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        long length = Files.size(file);
+        String etag = "\"" + Long.toHexString(length) + "-"
+                + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setContentType(contentTypeOf(file));
+
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && length > 0) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Zero-copy: the container writes the file from the kernel page cache
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * Parse a single "bytes=first-last" range, returning inclusive bounds or null when unsatisfiable.
+     * Multiple ranges are served as the first one.
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).split(",")[0].trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String contentTypeOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+}
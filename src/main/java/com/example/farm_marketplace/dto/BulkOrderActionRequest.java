@@ -0,0 +1,15 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Orders to transition: either explicit ids or all orders in the source status created before a time
+ */
+@Data
+public class BulkOrderActionRequest {
+    private List<Long> ids;
+    private LocalDateTime createdBefore;
+}
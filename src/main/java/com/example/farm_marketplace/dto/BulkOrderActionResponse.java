@@ -0,0 +1,23 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@Builder
+public class BulkOrderActionResponse {
+    private String action;
+    private int succeeded;
+    private int failed;
+    private List<Outcome> results;
+
+    @Data
+    @Builder
+    public static class Outcome {
+        private Long orderId;
+        private boolean success;
+        private String status;
+        private String message;
+    }
+}
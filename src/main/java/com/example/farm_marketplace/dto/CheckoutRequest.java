@@ -0,0 +1,14 @@
+package com.example.farm_marketplace.dto;
+
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class CheckoutRequest {
+    @Valid
+    @NotEmpty(message = "Cart must contain at least one item")
+    private List<OrderRequest.OrderItemRequest> items;
+}
@@ -0,0 +1,15 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.*;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutResponse {
+    private List<OrderResponse> orders;
+    private BigDecimal totalAmount;
+}
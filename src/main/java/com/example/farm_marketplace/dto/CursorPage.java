@@ -0,0 +1,14 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@Builder
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+    private int limit;
+}
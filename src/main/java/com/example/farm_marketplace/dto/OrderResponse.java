@@ -8,6 +8,8 @@ import java.util.List;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class OrderResponse {
     private Long id;
     private Long buyerId;
@@ -23,6 +25,8 @@ public class OrderResponse {
 
     @Data
     @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
     public static class OrderItemResponse {
         private Long id;
         private Long productId;
@@ -31,4 +35,4 @@ public class OrderResponse {
         private BigDecimal priceEach;
         private BigDecimal subtotal;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
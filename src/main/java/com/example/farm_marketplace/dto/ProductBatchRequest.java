@@ -0,0 +1,12 @@
+package com.example.farm_marketplace.dto;
+
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class ProductBatchRequest {
+    @NotEmpty(message = "At least one product id is required")
+    private List<Long> ids;
+}
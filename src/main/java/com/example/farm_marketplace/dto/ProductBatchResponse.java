@@ -0,0 +1,12 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@Builder
+public class ProductBatchResponse {
+    private List<ProductResponse> products;
+    private List<Long> missingIds;
+}
@@ -0,0 +1,14 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@Builder
+public class ProductChangesResponse {
+    private List<ProductResponse> updated;
+    private List<Long> deleted;
+    private String nextToken;
+    private boolean hasMore;
+}
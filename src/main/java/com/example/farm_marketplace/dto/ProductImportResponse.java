@@ -0,0 +1,23 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@Builder
+public class ProductImportResponse {
+    private long totalRows;
+    private long created;
+    private long updated;
+    private long failed;
+    private List<RowError> errors;
+    private boolean errorsTruncated;
+
+    @Data
+    @Builder
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
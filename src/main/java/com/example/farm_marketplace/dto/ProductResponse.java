@@ -4,6 +4,7 @@ package com.example.farm_marketplace.dto;
 import lombok.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Data
 @Builder
@@ -20,6 +21,9 @@ public class ProductResponse {
     private String unit;
     private BigDecimal qtyAvailable;
     private String imageUrl;
+    private Map<String, String> imageDerivatives;
     private Boolean active;
+    private Long version;
     private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
 }
@@ -0,0 +1,28 @@
+package com.example.farm_marketplace.dto;
+
+
+import lombok.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+public class SalesAnalyticsResponse {
+    private String granularity;
+    private LocalDate from;
+    private LocalDate to;
+    private BigDecimal totalRevenue;
+    private List<Point> points;
+
+    @Data
+    @Builder
+    public static class Point {
+        private LocalDate bucketStart;
+        private Long productId;
+        private String productName;
+        private BigDecimal quantity;
+        private BigDecimal revenue;
+        private long orders;
+    }
+}
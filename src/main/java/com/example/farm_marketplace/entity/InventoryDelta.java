@@ -0,0 +1,36 @@
+package com.example.farm_marketplace.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Stock change of a ledger-managed product that is not yet applied to products.qty_available
+ */
+@Entity
+@Table(name = "inventory_deltas")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryDelta {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false, precision = 10, scale = 3)
+    private BigDecimal delta;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -12,7 +12,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_status_created", columnList = "status, created_at"),
+        @Index(name = "idx_orders_buyer_created_id", columnList = "buyer_id, created_at, id"),
+        @Index(name = "idx_orders_farmer_created_id", columnList = "farmer_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -50,6 +54,6 @@ public class Order {
     private LocalDateTime updatedAt;
 
     public enum OrderStatus {
-        PENDING, CONFIRMED, REJECTED, CANCELLED, COMPLETED
+        PENDING, CONFIRMED, REJECTED, CANCELLED, COMPLETED, EXPIRED
     }
 }
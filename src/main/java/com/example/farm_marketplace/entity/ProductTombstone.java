@@ -0,0 +1,32 @@
+package com.example.farm_marketplace.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Record of a deleted product, kept so catalog change feeds can report the deletion
+ */
+@Entity
+@Table(name = "product_tombstones", indexes = {
+        @Index(name = "idx_product_tombstones_deleted_id", columnList = "deleted_at, product_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductTombstone {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "farmer_id", nullable = false)
+    private Long farmerId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
@@ -0,0 +1,61 @@
+package com.example.farm_marketplace.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Completed sales of one product in one day, week or month bucket.
+ * Buckets are keyed by the date the orders were completed.
+ */
+@Entity
+@Table(name = "sales_rollups", indexes = {
+        @Index(name = "idx_sales_rollups_farmer_bucket", columnList = "farmer_id, granularity, bucket_start")
+})
+@IdClass(SalesRollup.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SalesRollup {
+    @Id
+    @Column(name = "farmer_id")
+    private Long farmerId;
+
+    @Id
+    @Column(length = 10)
+    private String granularity;
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDate bucketStart;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(nullable = false, precision = 14, scale = 3)
+    private BigDecimal quantity;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal revenue;
+
+    @Column(name = "order_count", nullable = false)
+    private long orderCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long farmerId;
+        private String granularity;
+        private LocalDate bucketStart;
+        private Long productId;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.farm_marketplace.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Single row recording up to which day daily sales rollups were folded into weeks and months
+ */
+@Entity
+@Table(name = "sales_rollup_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SalesRollupState {
+    @Id
+    private Integer id;
+
+    @Column(name = "compacted_through", nullable = false)
+    private LocalDate compactedThrough;
+}
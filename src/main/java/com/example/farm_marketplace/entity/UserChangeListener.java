@@ -0,0 +1,25 @@
+package com.example.farm_marketplace.entity;
+
+import com.example.farm_marketplace.event.UserChangedEvent;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Announces every update or removal of a {@link User} made through JPA, so caches
+ * keyed by user data (such as ids by email) are dropped whatever code path changed it.
+ * Created by Hibernate through Spring, which injects the publisher.
+ */
+public class UserChangeListener {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserChangeListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostUpdate
+    @PostRemove
+    void userChanged(User user) {
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
+    }
+}
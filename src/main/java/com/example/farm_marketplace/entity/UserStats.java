@@ -0,0 +1,65 @@
+package com.example.farm_marketplace.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Dashboard counters of one user, kept up to date by every order and product change.
+ * Order counts cover the orders the user placed (buyer) or received (farmer).
+ */
+@Entity
+@Table(name = "user_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserStats {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "pending_orders", nullable = false)
+    private long pendingOrders;
+
+    @Column(name = "confirmed_orders", nullable = false)
+    private long confirmedOrders;
+
+    @Column(name = "completed_orders", nullable = false)
+    private long completedOrders;
+
+    @Column(name = "rejected_orders", nullable = false)
+    private long rejectedOrders;
+
+    @Column(name = "cancelled_orders", nullable = false)
+    private long cancelledOrders;
+
+    @Column(name = "expired_orders", nullable = false)
+    private long expiredOrders;
+
+    // Total of COMPLETED orders
+    @Column(name = "completed_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal completedAmount;
+
+    // Total of PENDING and CONFIRMED orders
+    @Column(name = "open_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal openAmount;
+
+    @Column(name = "total_products", nullable = false)
+    private long totalProducts;
+
+    @Column(name = "active_products", nullable = false)
+    private long activeProducts;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public long getTotalOrders() {
+        return pendingOrders + confirmedOrders + completedOrders + rejectedOrders + cancelledOrders + expiredOrders;
+    }
+}
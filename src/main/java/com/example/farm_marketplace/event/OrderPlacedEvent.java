@@ -0,0 +1,19 @@
+package com.example.farm_marketplace.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * Published inside the transaction that placed an order, with the buyer's
+ * location and the ordered products. Listeners react after commit.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Long orderId;
+    private final String buyerState;
+    private final String buyerDistrict;
+    private final Collection<Long> productIds;
+}
@@ -0,0 +1,22 @@
+package com.example.farm_marketplace.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * Published inside the transaction that changed one or more products.
+ * Listeners that keep derived copies of product data react after commit.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final Long farmerId;
+    private final Collection<Long> productIds;
+    private final ChangeType type;
+
+    public enum ChangeType {
+        CREATED, UPDATED, STOCK, DELETED
+    }
+}
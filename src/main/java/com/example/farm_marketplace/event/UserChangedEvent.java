@@ -0,0 +1,14 @@
+package com.example.farm_marketplace.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a user row is updated or deleted, from inside the changing
+ * transaction. Listeners react after commit.
+ */
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+    private final Long userId;
+}
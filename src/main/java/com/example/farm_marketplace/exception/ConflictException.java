@@ -0,0 +1,7 @@
+package com.example.farm_marketplace.exception;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.farm_marketplace.exception;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The work was started but its outcome is not known yet: it may still commit.
+ * Callers must not treat it as failed, e.g. by releasing an idempotency claim.
+ */
+public class OutcomeUnknownException extends RuntimeException {
+    private final transient CompletableFuture<?> outcome;
+
+    public OutcomeUnknownException(String message, Throwable cause, CompletableFuture<?> outcome) {
+        super(message, cause);
+        this.outcome = outcome;
+    }
+
+    /**
+     * Run action once the work has committed or failed
+     */
+    public void whenSettled(Runnable action) {
+        outcome.whenComplete((result, error) -> action.run());
+    }
+}
@@ -2,8 +2,22 @@ package com.example.farm_marketplace.repository;
 
 import com.example.farm_marketplace.entity.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+
+    /**
+     * Items of several orders with their products, in one statement
+     */
+    @Query("SELECT i FROM OrderItem i JOIN FETCH i.product WHERE i.order.id IN :orderIds ORDER BY i.id")
+    List<OrderItem> findWithProductByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("SELECT DISTINCT i.product.id FROM OrderItem i WHERE i.order.id = :orderId")
+    List<Long> findProductIdsByOrderId(@Param("orderId") Long orderId);
 }
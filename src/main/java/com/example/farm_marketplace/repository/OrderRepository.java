@@ -1,10 +1,18 @@
 package com.example.farm_marketplace.repository;
 
 import com.example.farm_marketplace.entity.Order;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -12,4 +20,50 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByFarmerId(Long farmerId);
     List<Order> findByBuyerIdAndStatus(Long buyerId, Order.OrderStatus status);
     List<Order> findByFarmerIdAndStatus(Long farmerId, Order.OrderStatus status);
+
+    /**
+     * Keyset page of a buyer's orders with buyer and farmer, newest first, strictly after (createdAt, id).
+     * Filters use sentinels (all statuses, open date bounds) rather than nullable parameters.
+     */
+    @Query("SELECT o FROM Order o JOIN FETCH o.buyer JOIN FETCH o.farmer " +
+            "WHERE o.buyer.id = :userId AND o.status IN :statuses " +
+            "AND o.createdAt >= :from AND o.createdAt < :to " +
+            "AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findBuyerOrdersAfter(@Param("userId") Long buyerId,
+                                     @Param("statuses") Collection<Order.OrderStatus> statuses,
+                                     @Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    /**
+     * Keyset page of a farmer's orders with buyer and farmer, newest first, strictly after (createdAt, id)
+     */
+    @Query("SELECT o FROM Order o JOIN FETCH o.buyer JOIN FETCH o.farmer " +
+            "WHERE o.farmer.id = :userId AND o.status IN :statuses " +
+            "AND o.createdAt >= :from AND o.createdAt < :to " +
+            "AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findFarmerOrdersAfter(@Param("userId") Long farmerId,
+                                      @Param("statuses") Collection<Order.OrderStatus> statuses,
+                                      @Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    /**
+     * Order with buyer and farmer, for building a response without lazy loads
+     */
+    @Query("SELECT o FROM Order o JOIN FETCH o.buyer JOIN FETCH o.farmer WHERE o.id = :id")
+    Optional<Order> findWithPartiesById(@Param("id") Long id);
+
+    /**
+     * Order with its row locked until the transaction ends, for status transitions
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") Long id);
 }
@@ -1,17 +1,58 @@
 package com.example.farm_marketplace.repository;
 
 import com.example.farm_marketplace.entity.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    @EntityGraph(attributePaths = "farmer")
     List<Product> findByFarmerId(Long farmerId);
     List<Product> findByActiveTrue();
 
-    @Query("SELECT p FROM Product p WHERE p.active = true AND p.qtyAvailable > 0")
-    List<Product> findAvailableProducts();
+    @Query("SELECT p.id FROM Product p WHERE p.farmer.id = :farmerId")
+    List<Long> findIdsByFarmerId(@Param("farmerId") Long farmerId);
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.farmer WHERE p.id = :id")
+    Optional<Product> findWithFarmerById(@Param("id") Long id);
+
+    /**
+     * Keyset page of available products, newest first, strictly after (createdAt, id)
+     */
+    @Query("SELECT p FROM Product p JOIN FETCH p.farmer WHERE p.active = true AND p.qtyAvailable > 0 " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Product> findAvailableProductsAfter(@Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id,
+                                             Pageable pageable);
+
+    /**
+     * Keyset page of changed products (any status), oldest change first,
+     * strictly after (updatedAt, id) and before until
+     */
+    @Query("SELECT p FROM Product p JOIN FETCH p.farmer WHERE p.updatedAt < :until " +
+            "AND (p.updatedAt > :updatedAt OR (p.updatedAt = :updatedAt AND p.id > :id)) " +
+            "ORDER BY p.updatedAt ASC, p.id ASC")
+    List<Product> findChangedAfter(@Param("updatedAt") LocalDateTime updatedAt,
+                                   @Param("id") Long id,
+                                   @Param("until") LocalDateTime until,
+                                   Pageable pageable);
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.farmer WHERE p.id IN :ids")
+    List<Product> findAllWithFarmerByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Batch of products ordered by id, used to walk the whole catalog in bounded chunks
+     */
+    @Query("SELECT p FROM Product p JOIN FETCH p.farmer WHERE p.id > :afterId ORDER BY p.id")
+    List<Product> findBatchWithFarmer(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -0,0 +1,26 @@
+package com.example.farm_marketplace.repository;
+
+import com.example.farm_marketplace.entity.ProductTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProductTombstoneRepository extends JpaRepository<ProductTombstone, Long> {
+
+    /**
+     * Keyset page of deletions, oldest first, strictly after (deletedAt, productId) and before until
+     */
+    @Query("SELECT t FROM ProductTombstone t WHERE t.deletedAt < :until " +
+            "AND (t.deletedAt > :deletedAt OR (t.deletedAt = :deletedAt AND t.productId > :productId)) " +
+            "ORDER BY t.deletedAt ASC, t.productId ASC")
+    List<ProductTombstone> findDeletedAfter(@Param("deletedAt") LocalDateTime deletedAt,
+                                            @Param("productId") Long productId,
+                                            @Param("until") LocalDateTime until,
+                                            Pageable pageable);
+}
@@ -0,0 +1,9 @@
+package com.example.farm_marketplace.repository;
+
+import com.example.farm_marketplace.entity.UserStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+}
@@ -0,0 +1,202 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.event.OrderPlacedEvent;
+import com.example.farm_marketplace.util.LongIntHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Buyers also ordered" neighbours per product, counted from products that appear
+ * in the same order. Pair counts are held in memory, one {@link LongIntHashMap} of
+ * neighbour id to count per product. The index is rebuilt from order_items at
+ * start and nightly, and every placed order adds its pairs after commit.
+ */
+@Slf4j
+@Service
+public class AlsoBoughtService {
+    private static final String ITEMS_SQL =
+            "SELECT DISTINCT order_id, product_id FROM order_items ORDER BY order_id";
+
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxItemsPerOrder;
+    private final int maxNeighbours;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, LongIntHashMap> neighbours = new HashMap<>();
+    // Orders placed while a rebuild reads the table; null when no rebuild runs
+    private List<OrderPlacedEvent> placedDuringRebuild;
+
+    public AlsoBoughtService(
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            @Value("${also-bought.fetch-size:1000}") int fetchSize,
+            @Value("${also-bought.max-items-per-order:50}") int maxItemsPerOrder,
+            @Value("${also-bought.max-neighbours:20}") int maxNeighbours) {
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxItemsPerOrder = maxItemsPerOrder;
+        this.maxNeighbours = maxNeighbours;
+    }
+
+    /**
+     * Count every pair of distinct products in the placed order
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        lock.writeLock().lock();
+        try {
+            addPairs(neighbours, event.getProductIds());
+            if (placedDuringRebuild != null) {
+                placedDuringRebuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to limit product ids most often ordered together with the product, most frequent first
+     */
+    public List<Long> alsoBoughtIds(Long productId, int limit) {
+        int size = Math.max(1, Math.min(limit, maxNeighbours));
+        long[] topIds = new long[size];
+        int[] topCounts = new int[size];
+        int[] found = {0};
+
+        lock.readLock().lock();
+        try {
+            LongIntHashMap counts = neighbours.get(productId);
+            if (counts == null) {
+                return List.of();
+            }
+            // Insertion into a short sorted array; ties go to the lower id
+            counts.forEach((id, count) -> {
+                int n = found[0];
+                if (n == size && !ranksAbove(count, id, topCounts[n - 1], topIds[n - 1])) {
+                    return;
+                }
+                int at = n == size ? n - 1 : n;
+                while (at > 0 && ranksAbove(count, id, topCounts[at - 1], topIds[at - 1])) {
+                    topIds[at] = topIds[at - 1];
+                    topCounts[at] = topCounts[at - 1];
+                    at--;
+                }
+                topIds[at] = id;
+                topCounts[at] = count;
+                found[0] = Math.min(n + 1, size);
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Long> ids = new ArrayList<>(found[0]);
+        for (int i = 0; i < found[0]; i++) {
+            ids.add(topIds[i]);
+        }
+        return ids;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Recount all pairs from order_items, streaming rows grouped by order, and swap the
+     * result in. Orders placed meanwhile that the read did not see are replayed onto it;
+     * ids are not committed in order, so the ids read are kept rather than the highest one.
+     */
+    @Scheduled(cron = "${also-bought.rebuild-cron:0 0 4 * * *}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (placedDuringRebuild != null) {
+                return;
+            }
+            placedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, LongIntHashMap> rebuilt = new HashMap<>();
+        // Used as a set of order ids: value 1 for every order the read saw
+        LongIntHashMap ordersRead = new LongIntHashMap();
+        try {
+            readOnlyTransaction.executeWithoutResult(tx -> {
+                List<Long> orderProducts = new ArrayList<>();
+                long[] currentOrder = {-1};
+                cursorJdbcTemplate.query(ITEMS_SQL, rs -> {
+                    long orderId = rs.getLong("order_id");
+                    if (orderId != currentOrder[0]) {
+                        addPairs(rebuilt, orderProducts);
+                        orderProducts.clear();
+                        currentOrder[0] = orderId;
+                        ordersRead.addTo(orderId, 1);
+                    }
+                    orderProducts.add(rs.getLong("product_id"));
+                });
+                addPairs(rebuilt, orderProducts);
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                placedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (OrderPlacedEvent event : placedDuringRebuild) {
+                if (!ordersRead.containsKey(event.getOrderId())) {
+                    addPairs(rebuilt, event.getProductIds());
+                }
+            }
+            neighbours = rebuilt;
+            placedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Rebuilt also-bought index for {} products", rebuilt.size());
+    }
+
+    /**
+     * Orders with very many products are skipped; their pairs say little and grow quadratically
+     */
+    private void addPairs(Map<Long, LongIntHashMap> target, Collection<Long> productIds) {
+        if (productIds.size() < 2 || productIds.size() > maxItemsPerOrder) {
+            return;
+        }
+        long[] ids = productIds.stream().mapToLong(Long::longValue).distinct().toArray();
+        for (long a : ids) {
+            LongIntHashMap counts = target.computeIfAbsent(a, key -> new LongIntHashMap());
+            for (long b : ids) {
+                if (a != b) {
+                    counts.addTo(b, 1);
+                }
+            }
+        }
+    }
+
+    private static boolean ranksAbove(int count, long id, int otherCount, long otherId) {
+        return count > otherCount || (count == otherCount && id < otherId);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.entity.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a unit of work that lost a concurrency race (optimistic version
+ * mismatch, deadlock, lock timeout) with bounded, fully jittered exponential
+ * backoff. Each attempt must run in its own transaction.
+ * Conflicts are counted per product so hot products can be spotted.
+ */
+@Slf4j
+@Component
+public class ConflictRetryExecutor {
+    private static final int MAX_TRACKED_PRODUCTS = 10_000;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Map<Long, LongAdder> conflictsByProduct = new ConcurrentHashMap<>();
+    private final Counter conflicts;
+    private final Counter exhausted;
+
+    public ConflictRetryExecutor(
+            @Value("${orders.retry.max-attempts:4}") int maxAttempts,
+            @Value("${orders.retry.initial-backoff-ms:10}") long initialBackoffMillis,
+            @Value("${orders.retry.max-backoff-ms:200}") long maxBackoffMillis,
+            MeterRegistry meterRegistry) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.conflicts = Counter.builder("orders.conflicts").register(meterRegistry);
+        this.exhausted = Counter.builder("orders.conflicts.exhausted").register(meterRegistry);
+    }
+
+    /**
+     * Run the action, retrying on concurrency failures until the retry budget is spent.
+     * productIds are the products the action touches, used for conflict counting when
+     * the failure itself does not name the product.
+     */
+    public <T> T execute(Collection<Long> productIds, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException e) {
+                recordConflict(e, productIds);
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("Giving up after {} conflicting attempts on products {}", attempt, productIds);
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Conflict count per product, highest first
+     */
+    public Map<Long, Long> getConflictCounts(int limit) {
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        conflictsByProduct.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Long, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(limit)
+                .forEach(e -> counts.put(e.getKey(), e.getValue().sum()));
+        return counts;
+    }
+
+    private void recordConflict(ConcurrencyFailureException e, Collection<Long> productIds) {
+        conflicts.increment();
+        Collection<Long> ids = productIds;
+        if (e instanceof ObjectOptimisticLockingFailureException optimistic
+                && Product.class.getName().equals(optimistic.getPersistentClassName())
+                && optimistic.getIdentifier() instanceof Long id) {
+            ids = List.of(id);
+        }
+        for (Long id : ids) {
+            LongAdder counter = conflictsByProduct.get(id);
+            if (counter == null && conflictsByProduct.size() < MAX_TRACKED_PRODUCTS) {
+                counter = conflictsByProduct.computeIfAbsent(id, key -> new LongAdder());
+            }
+            if (counter != null) {
+                counter.increment();
+            }
+        }
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a conflicting update", interrupted);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.ProductResponse;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.util.LruCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Per-farmer cache of the already mapped product list shown on the farmer dashboard.
+ * Bounded by the number of farmers held and by the size of a single list; a
+ * farmer's entry is dropped after any committed product or stock change of theirs
+ * on this node. Other nodes' changes show once the entry expires, after at most
+ * farmer.products.cache.ttl-seconds.
+ */
+@Component
+public class FarmerProductCache {
+    private final LruCache<Long, List<ProductResponse>> cache;
+    private final int maxProductsPerFarmer;
+
+    public FarmerProductCache(
+            @Value("${farmer.products.cache.max-farmers:1000}") int maxFarmers,
+            @Value("${farmer.products.cache.max-products-per-farmer:500}") int maxProductsPerFarmer,
+            @Value("${farmer.products.cache.ttl-seconds:30}") long ttlSeconds,
+            MeterRegistry meterRegistry) {
+        this.cache = new LruCache<>(maxFarmers, Duration.ofSeconds(ttlSeconds));
+        this.maxProductsPerFarmer = maxProductsPerFarmer;
+
+        FunctionCounter.builder("farmer.products.cache.hits", cache, LruCache::getHitCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("farmer.products.cache.misses", cache, LruCache::getMissCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("farmer.products.cache.evictions", cache, LruCache::getEvictionCount)
+                .register(meterRegistry);
+        Gauge.builder("farmer.products.cache.size", cache, LruCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cached product list of a farmer, or load it; very large lists are not cached
+     */
+    public List<ProductResponse> get(Long farmerId, Function<Long, List<ProductResponse>> loader) {
+        return cache.getOrLoad(farmerId,
+                id -> List.copyOf(loader.apply(id)),
+                products -> products.size() <= maxProductsPerFarmer);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getFarmerId() != null) {
+            cache.invalidate(event.getFarmerId());
+        }
+    }
+}
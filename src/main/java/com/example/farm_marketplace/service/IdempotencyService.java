@@ -0,0 +1,322 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.exception.BadRequestException;
+import com.example.farm_marketplace.exception.ConflictException;
+import com.example.farm_marketplace.exception.OutcomeUnknownException;
+import com.example.farm_marketplace.util.LruCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Makes a request safe to retry under an Idempotency-Key: the first response
+ * is stored and replayed for every later request with the same key.
+ * A key is claimed in the idempotency_keys table before the work starts and
+ * marked complete by the work's own transaction, so the stored response and
+ * the work it describes commit together. Completed responses are also kept in
+ * a bounded in-memory cache; duplicates arriving while the first request is
+ * still running on this node wait for its result.
+ * While a claim's work runs, its owner refreshes the claim's created_at every
+ * third of stale-claim-seconds, so only a claim whose owner stopped refreshing
+ * it (crashed) is taken over, however long the work itself takes.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+
+    private static final String CLAIM_SQL =
+            "INSERT INTO idempotency_keys (idempotency_key, request_hash, status, created_at, expires_at) " +
+            "VALUES (?, ?, 'IN_PROGRESS', ?, ?) ON CONFLICT (idempotency_key) DO NOTHING";
+    private static final String SELECT_SQL =
+            "SELECT request_hash, status, response_body, created_at, expires_at " +
+            "FROM idempotency_keys WHERE idempotency_key = ?";
+    private static final String TAKE_OVER_SQL =
+            "UPDATE idempotency_keys SET request_hash = ?, status = 'IN_PROGRESS', response_body = NULL, " +
+            "created_at = ?, expires_at = ? WHERE idempotency_key = ? AND created_at = ?";
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_keys SET status = 'COMPLETED', response_body = ? WHERE idempotency_key = ?";
+    private static final String HEARTBEAT_SQL =
+            "UPDATE idempotency_keys SET created_at = ? " +
+            "WHERE idempotency_key = ? AND status = 'IN_PROGRESS' AND created_at = ?";
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND status = 'IN_PROGRESS'";
+    private static final String PURGE_SQL =
+            "DELETE FROM idempotency_keys WHERE expires_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration staleClaim;
+    private final Duration waitTimeout;
+    private final LruCache<String, StoredResponse> responses;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    // Claims this node is working on, with the created_at it last wrote for each
+    private final Map<String, LocalDateTime> ownedClaims = new ConcurrentHashMap<>();
+    private ScheduledExecutorService heartbeat;
+
+    public IdempotencyService(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${idempotency.stale-claim-seconds:60}") long staleClaimSeconds,
+            @Value("${idempotency.wait-timeout-seconds:30}") long waitTimeoutSeconds,
+            @Value("${idempotency.cache.max-entries:10000}") int maxCachedResponses) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.staleClaim = Duration.ofSeconds(staleClaimSeconds);
+        this.waitTimeout = Duration.ofSeconds(waitTimeoutSeconds);
+        this.responses = new LruCache<>(maxCachedResponses);
+    }
+
+    @PostConstruct
+    void start() {
+        long intervalMillis = Math.max(1000, staleClaim.toMillis() / 3);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-claim-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::refreshClaims, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    /**
+     * Claim handed to the work; {@link #complete(Object)} must be called inside the work's transaction
+     */
+    public final class Claim {
+        private final String key;
+
+        private Claim(String key) {
+            this.key = key;
+        }
+
+        public void complete(Object response) {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw new IllegalStateException("An idempotency claim must be completed inside a transaction");
+            }
+            jdbcTemplate.update(COMPLETE_SQL, toJson(response), key);
+        }
+    }
+
+    /**
+     * Run work once per (scope, key). Replays return the stored response without running it;
+     * reusing a key for a different request is rejected.
+     */
+    public <T> T execute(String scope, String idempotencyKey, Object request,
+                         Class<T> responseType, Function<Claim, T> work) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = scope + ":" + idempotencyKey;
+        String requestHash = sha256(toJson(request));
+
+        T cached = replay(key, requestHash, responseType);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            return awaitDuplicate(running, key, requestHash, responseType);
+        }
+
+        try {
+            T response = claimAndRun(key, requestHash, responseType, work);
+            result.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, result);
+        }
+    }
+
+    /**
+     * Drop expired keys
+     */
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:600000}")
+    public void purgeExpired() {
+        int purged = jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(LocalDateTime.now()));
+        if (purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Keep the claims this node is still working on from looking abandoned
+     */
+    void refreshClaims() {
+        ownedClaims.forEach((key, claimedAt) -> {
+            LocalDateTime now = claimTime();
+            try {
+                if (jdbcTemplate.update(HEARTBEAT_SQL, Timestamp.valueOf(now), key, Timestamp.valueOf(claimedAt)) == 1) {
+                    ownedClaims.replace(key, claimedAt, now);
+                } else {
+                    // Completed or released meanwhile; the owner forgets it shortly
+                    ownedClaims.remove(key, claimedAt);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not refresh idempotency claim {}", key, e);
+            }
+        });
+    }
+
+    private <T> T claimAndRun(String key, String requestHash, Class<T> responseType, Function<Claim, T> work) {
+        LocalDateTime now = claimTime();
+        int claimed = jdbcTemplate.update(CLAIM_SQL, key, requestHash,
+                Timestamp.valueOf(now), Timestamp.valueOf(now.plus(ttl)));
+
+        if (claimed == 0) {
+            StoredResponse stored = load(key);
+            if (stored != null && COMPLETED.equals(stored.status) && stored.expiresAt.isAfter(now)) {
+                return fromStored(key, requestHash, stored, responseType);
+            }
+            if (stored == null || !takeOverIfAbandoned(key, requestHash, stored, now)) {
+                throw new ConflictException("A request with this Idempotency-Key is still being processed");
+            }
+        }
+
+        ownedClaims.put(key, now);
+        try {
+            T response = work.apply(new Claim(key));
+            ownedClaims.remove(key);
+            responses.put(key, new StoredResponse(requestHash, COMPLETED, toJson(response), now, now.plus(ttl)));
+            return response;
+        } catch (OutcomeUnknownException e) {
+            // The work may still commit and complete the claim; a retry waits for it or replays it.
+            // Keep the claim alive until the work settles so it is not taken over meanwhile.
+            e.whenSettled(() -> ownedClaims.remove(key));
+            throw e;
+        } catch (RuntimeException e) {
+            // Nothing was committed under the key, so let the client retry it
+            ownedClaims.remove(key);
+            jdbcTemplate.update(RELEASE_SQL, key);
+            throw e;
+        }
+    }
+
+    /**
+     * Now, at the precision the database stores, so a written created_at can be matched later
+     */
+    private static LocalDateTime claimTime() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Take over a key whose claim was abandoned (owner crashed) or whose stored response has expired
+     */
+    private boolean takeOverIfAbandoned(String key, String requestHash, StoredResponse stored, LocalDateTime now) {
+        boolean abandoned = IN_PROGRESS.equals(stored.status) && stored.createdAt.plus(staleClaim).isBefore(now);
+        boolean expired = stored.expiresAt.isBefore(now);
+        if (!abandoned && !expired) {
+            return false;
+        }
+        return jdbcTemplate.update(TAKE_OVER_SQL, requestHash, Timestamp.valueOf(now),
+                Timestamp.valueOf(now.plus(ttl)), key, Timestamp.valueOf(stored.createdAt)) == 1;
+    }
+
+    private <T> T awaitDuplicate(CompletableFuture<Object> running, String key, String requestHash,
+                                 Class<T> responseType) {
+        try {
+            running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        T response = replay(key, requestHash, responseType);
+        if (response == null) {
+            throw new ConflictException("A request with this Idempotency-Key is still being processed");
+        }
+        return response;
+    }
+
+    private <T> T replay(String key, String requestHash, Class<T> responseType) {
+        StoredResponse stored = responses.get(key);
+        if (stored == null || stored.expiresAt.isBefore(LocalDateTime.now())) {
+            return null;
+        }
+        return fromStored(key, requestHash, stored, responseType);
+    }
+
+    private <T> T fromStored(String key, String requestHash, StoredResponse stored, Class<T> responseType) {
+        if (!stored.requestHash.equals(requestHash)) {
+            throw new BadRequestException("Idempotency-Key was already used for a different request");
+        }
+        responses.put(key, stored);
+        try {
+            return objectMapper.readValue(stored.responseBody, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response cannot be read", e);
+        }
+    }
+
+    private StoredResponse load(String key) {
+        List<StoredResponse> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new StoredResponse(
+                rs.getString("request_hash"),
+                rs.getString("status"),
+                rs.getString("response_body"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rs.getTimestamp("expires_at").toLocalDateTime()), key);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize idempotent request or response", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, String status, String responseBody,
+                                  LocalDateTime createdAt, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.farm_marketplace.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Produces fixed-size derivatives (card, list, detail) of uploaded images on a
+ * background pool and keeps them in a disk cache bounded by a byte budget,
+ * evicting the least recently served files first.
+ * Request threads only ever enqueue work; when the queue is full the job is
+ * dropped and retried the next time the derivative is requested.
+ * Images with more pixels than image.derivatives.max-pixels are not decoded, so a
+ * small, highly compressed upload cannot claim gigabytes of heap.
+ */
+@Slf4j
+@Service
+public class ImageDerivativeService {
+
+    public enum Variant {
+        CARD(320), LIST(160), DETAIL(800);
+
+        private final int maxDimension;
+
+        Variant(int maxDimension) {
+            this.maxDimension = maxDimension;
+        }
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Optional<Variant> fromKey(String key) {
+            return Arrays.stream(values()).filter(v -> v.key().equals(key)).findFirst();
+        }
+    }
+
+    private final ImageStorageService imageStorageService;
+    private final Path derivativesDir;
+    private final long maxBytes;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Access-ordered map of cached derivative files to their size in bytes
+    private final LinkedHashMap<Path, Long> cachedFiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    public ImageDerivativeService(
+            ImageStorageService imageStorageService,
+            @Value("${image.derivatives.threads:2}") int threads,
+            @Value("${image.derivatives.queue-capacity:200}") int queueCapacity,
+            @Value("${image.derivatives.max-bytes:268435456}") long maxBytes,
+            @Value("${image.derivatives.max-pixels:25000000}") long maxPixels) {
+        this.imageStorageService = imageStorageService;
+        this.derivativesDir = imageStorageService.getUploadDir().resolve("derivatives");
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Register derivatives left on disk by a previous run, oldest first
+     */
+    @PostConstruct
+    void loadExistingDerivatives() throws IOException {
+        Files.createDirectories(derivativesDir);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(derivativesDir)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparingLong(ImageDerivativeService::lastModified))
+                    .toList();
+        }
+        for (Path file : files) {
+            record(file, Files.size(file));
+        }
+        log.info("Image derivative cache holds {} files ({} bytes)", files.size(), cachedBytes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue generation of every variant of an uploaded image
+     */
+    public void submit(String filename) {
+        for (Variant variant : Variant.values()) {
+            submit(filename, variant);
+        }
+    }
+
+    /**
+     * The cached derivative, or null when it does not exist yet (generation is then queued).
+     * A file that vanished from disk counts as a miss.
+     */
+    public Path find(String filename, Variant variant) {
+        Path derivative = derivativePath(filename, variant);
+        synchronized (this) {
+            if (cachedFiles.get(derivative) != null) {
+                if (Files.exists(derivative)) {
+                    return derivative;
+                }
+                cachedBytes -= cachedFiles.remove(derivative);
+            }
+        }
+        submit(filename, variant);
+        return null;
+    }
+
+    private void submit(String filename, Variant variant) {
+        String key = variant.key() + "/" + filename;
+        if (!inFlight.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(filename, variant);
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue full: drop the job, it is queued again on the next request for it
+            inFlight.remove(key);
+        }
+    }
+
+    private void generate(String filename, Variant variant) {
+        Path target = derivativePath(filename, variant);
+        Path temp = null;
+        try {
+            if (Files.exists(target)) {
+                record(target, Files.size(target));
+                return;
+            }
+            Path original = imageStorageService.resolve(filename);
+            BufferedImage source = decode(original, filename);
+            if (source == null) {
+                return;
+            }
+
+            String format = formatOf(filename);
+            BufferedImage scaled = scale(source, variant.maxDimension, "jpg".equals(format));
+
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), "derivative-", ".tmp");
+            if (!ImageIO.write(scaled, format, temp.toFile())) {
+                log.warn("No image writer for {}, no derivatives generated", filename);
+                Files.deleteIfExists(temp);
+                return;
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            record(target, Files.size(target));
+        } catch (Exception e) {
+            log.warn("Failed to generate {} derivative of {}", variant.key(), filename, e);
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ignored) {
+                // Best effort cleanup of a temp file
+            }
+        }
+    }
+
+    /**
+     * Decode the image after checking its dimensions from the header; null when it
+     * cannot be decoded or has too many pixels
+     */
+    private BufferedImage decode(Path original, String filename) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                log.warn("Cannot decode image {}, no derivatives generated", filename);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Image {} has {} pixels, over the limit of {}; no derivatives generated",
+                            filename, pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0, reader.getDefaultReadParam());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Fit the image inside a square of maxDimension, never upscaling
+     */
+    private static BufferedImage scale(BufferedImage source, int maxDimension, boolean opaque) {
+        double ratio = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage scaled = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Add a file to the cache and evict least recently used files beyond the byte budget.
+     * Files are deleted under the lock, so a derivative regenerated meanwhile is never
+     * deleted by an older eviction while the cache lists it.
+     */
+    private synchronized void record(Path file, long size) {
+        Long previous = cachedFiles.put(file, size);
+        cachedBytes += size - (previous == null ? 0 : previous);
+
+        Iterator<Map.Entry<Path, Long>> eldest = cachedFiles.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Path, Long> entry = eldest.next();
+            if (entry.getKey().equals(file)) {
+                continue;
+            }
+            cachedBytes -= entry.getValue();
+            eldest.remove();
+            try {
+                Files.deleteIfExists(entry.getKey());
+            } catch (IOException e) {
+                log.warn("Could not evict derivative {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private Path derivativePath(String filename, Variant variant) {
+        return derivativesDir.resolve(variant.key()).resolve(filename);
+    }
+
+    private static String formatOf(String filename) {
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return extension.equals("jpeg") ? "jpg" : extension;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
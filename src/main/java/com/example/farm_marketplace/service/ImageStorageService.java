@@ -0,0 +1,130 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.exception.BadRequestException;
+import com.example.farm_marketplace.exception.ResourceNotFoundException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Stores uploaded images under the SHA-256 of their content, so identical
+ * uploads share one file and a stored file never changes once written.
+ */
+@Service
+public class ImageStorageService {
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif)");
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9._ -]+");
+
+    private final Path uploadDir;
+
+    public ImageStorageService(@Value("${file.upload-dir}") String uploadDir) {
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    @PostConstruct
+    void createUploadDir() throws IOException {
+        Files.createDirectories(uploadDir);
+    }
+
+    /**
+     * Store an uploaded image and return its file name ({sha256}.{ext}).
+     * The image type is taken from the file's magic bytes, not the client's content type.
+     */
+    public String store(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("Image file is required");
+        }
+
+        Path temp = null;
+        try {
+            String extension = detectExtension(file);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            temp = Files.createTempFile(uploadDir, "upload-", ".tmp");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String filename = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+            Path target = uploadDir.resolve(filename);
+            if (Files.exists(target)) {
+                // Same content already stored
+                Files.delete(temp);
+            } else {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return filename;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Could not store image", e);
+        } catch (NoSuchAlgorithmException e) {
+            deleteQuietly(temp);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Resolve a served file name to a regular file inside the upload directory
+     */
+    public Path resolve(String filename) {
+        if (filename == null || !SAFE_NAME.matcher(filename).matches() || filename.startsWith(".")) {
+            throw new ResourceNotFoundException("File not found");
+        }
+        Path file = uploadDir.resolve(filename).normalize();
+        if (!file.startsWith(uploadDir) || !Files.isRegularFile(file)) {
+            throw new ResourceNotFoundException("File not found");
+        }
+        return file;
+    }
+
+    /**
+     * Whether the name is a content hash, i.e. the file behind it can never change
+     */
+    public boolean isContentAddressed(String filename) {
+        return CONTENT_ADDRESSED_NAME.matcher(filename).matches();
+    }
+
+    public Path getUploadDir() {
+        return uploadDir;
+    }
+
+    private static String detectExtension(MultipartFile file) throws IOException {
+        byte[] header = new byte[12];
+        int read;
+        try (InputStream in = file.getInputStream()) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        if (read >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (read >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "png";
+        }
+        if (read >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "gif";
+        }
+        throw new BadRequestException("Only JPEG, PNG and GIF images are supported");
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Best effort cleanup of a temp file
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.util.StripedStock;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in in-memory stock ledger for a configured set of hot products.
+ * Orders reserve against a {@link StripedStock} instead of updating the
+ * products row, and record the change as a row in inventory_deltas inside the
+ * order transaction, so the write-behind log is exactly as durable as the order.
+ * A background flusher folds committed deltas into products.qty_available in
+ * one statement; on startup the ledger is rebuilt from products plus unflushed deltas.
+ * A farmer's stock edit is taken as the new total: deltas of earlier orders that
+ * were not flushed yet are still subtracted from it.
+ * The stock counts live in this node's memory, so the ledger must run on a single
+ * node: it holds a PostgreSQL advisory lock for as long as it runs, a second node
+ * with the ledger enabled refuses to start, and reservations stop if the lock is lost.
+ */
+@Slf4j
+@Component
+public class InventoryLedger {
+    private static final int SCALE = 3;
+
+    private static final String INSERT_DELTA_SQL =
+            "INSERT INTO inventory_deltas (product_id, delta, created_at) VALUES (?, ?, now())";
+    private static final String LOAD_SQL =
+            "SELECT p.id, p.qty_available + COALESCE((SELECT SUM(d.delta) FROM inventory_deltas d " +
+            "WHERE d.product_id = p.id), 0) AS qty FROM products p WHERE p.id IN (:ids)";
+    private static final String FLUSH_SQL =
+            "WITH drained AS (DELETE FROM inventory_deltas RETURNING product_id, delta), " +
+            "totals AS (SELECT product_id, SUM(delta) AS total FROM drained GROUP BY product_id) " +
+            "UPDATE products p SET qty_available = p.qty_available + t.total, version = p.version + 1, " +
+            "updated_at = now() FROM totals t WHERE p.id = t.product_id RETURNING p.id, p.farmer_id";
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(?)";
+    private static final String UNLOCK_SQL = "SELECT pg_advisory_unlock(?)";
+    // Shared by every node that enables the ledger
+    private static final long SINGLE_NODE_LOCK_KEY = 0x1ED6E4L;
+
+    private final boolean enabled;
+    private final Set<Long> managedIds;
+    private final int stripes;
+    private final long flushIntervalMillis;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DataSource dataSource;
+
+    private final Map<Long, StripedStock> stocks = new ConcurrentHashMap<>();
+    // Units reserved or restored by transactions that have not completed yet
+    private final Map<Long, LongAdder> inFlight = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+    // Dedicated connection holding the single-node advisory lock while the ledger runs
+    private Connection lockConnection;
+    private volatile boolean lockLost;
+
+    public InventoryLedger(
+            @Value("${inventory.ledger.enabled:false}") boolean enabled,
+            @Value("${inventory.ledger.product-ids:}") List<Long> productIds,
+            @Value("${inventory.ledger.stripes:16}") int stripes,
+            @Value("${inventory.ledger.flush-interval-ms:200}") long flushIntervalMillis,
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            ApplicationEventPublisher eventPublisher,
+            DataSource dataSource) {
+        this.enabled = enabled;
+        this.managedIds = enabled ? Set.copyOf(productIds) : Set.of();
+        this.stripes = stripes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Apply deltas left by a previous run, load the ledger and start the flusher
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        flush();
+        if (!enabled || managedIds.isEmpty()) {
+            return;
+        }
+        acquireSingleNodeLock();
+        managedIds.forEach(id -> inFlight.put(id, new LongAdder()));
+        reload(managedIds);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-ledger-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Inventory ledger manages {} products", stocks.size());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        releaseSingleNodeLock();
+    }
+
+    /**
+     * Whether the product's stock is currently kept by the ledger
+     */
+    public boolean manages(Long productId) {
+        return stocks.containsKey(productId);
+    }
+
+    /**
+     * Remove the ledger-managed entries from quantities and return them
+     */
+    public Map<Long, BigDecimal> takeManaged(Map<Long, BigDecimal> quantities) {
+        Map<Long, BigDecimal> managed = new LinkedHashMap<>();
+        if (stocks.isEmpty()) {
+            return managed;
+        }
+        quantities.entrySet().removeIf(entry -> {
+            if (manages(entry.getKey())) {
+                managed.put(entry.getKey(), entry.getValue());
+                return true;
+            }
+            return false;
+        });
+        return managed;
+    }
+
+    public BigDecimal available(Long productId) {
+        StripedStock stock = stocks.get(productId);
+        return stock == null ? null : BigDecimal.valueOf(stock.available(), SCALE);
+    }
+
+    /**
+     * Reserve quantities of ledger-managed products for the current transaction.
+     * All or nothing: returns the product that could not be reserved, or an empty list.
+     * Reservations are given back if the transaction does not commit.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Long> reserve(Map<Long, BigDecimal> quantities) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        if (lockLost) {
+            throw new IllegalStateException("Inventory ledger lost its single-node lock; restart this node");
+        }
+        Map<Long, Long> reserved = new LinkedHashMap<>();
+        for (Map.Entry<Long, BigDecimal> entry : quantities.entrySet()) {
+            long units = toUnits(entry.getValue());
+            StripedStock stock = stocks.get(entry.getKey());
+            if (stock == null || !stock.tryReserve(units)) {
+                reserved.forEach((id, amount) -> stocks.get(id).release(amount));
+                return List.of(entry.getKey());
+            }
+            reserved.put(entry.getKey(), units);
+        }
+
+        reserved.forEach((id, units) -> inFlight.get(id).add(units));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                reserved.forEach((id, units) -> {
+                    inFlight.get(id).add(-units);
+                    if (status != STATUS_COMMITTED) {
+                        stocks.get(id).release(units);
+                    }
+                });
+            }
+        });
+        writeDeltas(quantities, BigDecimal.ONE.negate());
+        return List.of();
+    }
+
+    /**
+     * Return quantities of ledger-managed products; they become available once the transaction commits
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void restore(Map<Long, BigDecimal> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> restored = new LinkedHashMap<>();
+        quantities.forEach((id, quantity) -> restored.put(id, toUnits(quantity)));
+
+        restored.forEach((id, units) -> inFlight.get(id).add(units));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                restored.forEach((id, units) -> {
+                    if (status == STATUS_COMMITTED) {
+                        stocks.get(id).release(units);
+                    }
+                    inFlight.get(id).add(-units);
+                });
+            }
+        });
+        writeDeltas(quantities, BigDecimal.ONE);
+    }
+
+    /**
+     * A farmer edit replaces the stock, so reload the ledger for edited products
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.ChangeType.STOCK || stocks.isEmpty()) {
+            return;
+        }
+        List<Long> ids = event.getProductIds().stream().filter(managedIds::contains).toList();
+        if (!ids.isEmpty()) {
+            reload(ids);
+        }
+    }
+
+    /**
+     * Fold all committed deltas into products.qty_available in one statement
+     */
+    void flush() {
+        checkSingleNodeLock();
+        try {
+            Map<Long, List<Long>> productIdsByFarmer = new HashMap<>();
+            jdbcTemplate.query(FLUSH_SQL, rs -> {
+                productIdsByFarmer.computeIfAbsent(rs.getLong("farmer_id"), key -> new ArrayList<>())
+                        .add(rs.getLong("id"));
+            });
+            productIdsByFarmer.forEach((farmerId, productIds) -> eventPublisher.publishEvent(
+                    new ProductChangedEvent(farmerId, productIds, ProductChangedEvent.ChangeType.STOCK)));
+        } catch (Exception e) {
+            log.warn("Inventory ledger flush failed, deltas stay queued", e);
+        }
+    }
+
+    /**
+     * Set ledger stock to the committed stock minus what in-flight transactions will still change.
+     * In-flight amounts are subtracted whichever way they go, so the ledger can only under-count.
+     */
+    private void reload(Collection<Long> productIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", productIds);
+        Set<Long> found = new HashSet<>();
+        namedJdbcTemplate.query(LOAD_SQL, params, rs -> {
+            long id = rs.getLong("id");
+            long units = toUnits(rs.getBigDecimal("qty")) - inFlight.get(id).sum();
+            stocks.computeIfAbsent(id, key -> new StripedStock(stripes, 0)).reset(Math.max(0, units));
+            found.add(id);
+        });
+        for (Long id : productIds) {
+            if (!found.contains(id)) {
+                stocks.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Take the advisory lock on a connection kept open while the ledger runs, or refuse to start
+     */
+    private void acquireSingleNodeLock() {
+        try {
+            Connection connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+            boolean acquired;
+            try (PreparedStatement statement = connection.prepareStatement(TRY_LOCK_SQL)) {
+                statement.setLong(1, SINGLE_NODE_LOCK_KEY);
+                try (ResultSet rs = statement.executeQuery()) {
+                    acquired = rs.next() && rs.getBoolean(1);
+                }
+            }
+            if (!acquired) {
+                connection.close();
+                throw new IllegalStateException("Inventory ledger is already running on another node; "
+                        + "it keeps stock in memory and must be enabled on one node only");
+            }
+            lockConnection = connection;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot take the inventory ledger lock", e);
+        }
+    }
+
+    /**
+     * The lock dies with its connection; once it is gone another node may start a ledger
+     */
+    private void checkSingleNodeLock() {
+        if (lockConnection == null || lockLost) {
+            return;
+        }
+        try {
+            if (!lockConnection.isValid(1)) {
+                lockLost = true;
+            }
+        } catch (SQLException e) {
+            lockLost = true;
+        }
+        if (lockLost) {
+            log.error("Inventory ledger lost its single-node lock; reservations are refused until restart");
+        }
+    }
+
+    private void releaseSingleNodeLock() {
+        if (lockConnection == null) {
+            return;
+        }
+        try (Connection connection = lockConnection;
+             PreparedStatement statement = connection.prepareStatement(UNLOCK_SQL)) {
+            statement.setLong(1, SINGLE_NODE_LOCK_KEY);
+            statement.execute();
+        } catch (SQLException e) {
+            log.warn("Could not release the inventory ledger lock", e);
+        } finally {
+            lockConnection = null;
+        }
+    }
+
+    private void writeDeltas(Map<Long, BigDecimal> quantities, BigDecimal sign) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> args.add(new Object[]{id, quantity.multiply(sign)}));
+        jdbcTemplate.batchUpdate(INSERT_DELTA_SQL, args);
+    }
+
+    private static long toUnits(BigDecimal quantity) {
+        return quantity.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
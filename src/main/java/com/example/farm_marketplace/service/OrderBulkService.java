@@ -0,0 +1,174 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.BulkOrderActionRequest;
+import com.example.farm_marketplace.dto.BulkOrderActionResponse;
+import com.example.farm_marketplace.entity.Order;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.exception.BadRequestException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Confirm, reject or complete many of a farmer's orders at once.
+ * The transition is a single conditional UPDATE ... RETURNING, so only orders
+ * that belong to the farmer and are still in the source status change; stock of
+ * rejected orders is given back with one aggregated restore per product.
+ * The changed rows return what the dashboard counters need, so they are updated
+ * without reading the orders again.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderBulkService {
+    static final int MAX_ORDERS = 1000;
+
+    private static final String TRANSITION_BY_IDS_SQL =
+            "UPDATE orders SET status = :to, updated_at = now() " +
+            "WHERE farmer_id = :farmerId AND status = :from AND id IN (:ids) RETURNING id, buyer_id, total_amount";
+    private static final String TRANSITION_BEFORE_SQL =
+            "UPDATE orders SET status = :to, updated_at = now() WHERE id IN (" +
+            "SELECT id FROM orders WHERE farmer_id = :farmerId AND status = :from AND created_at < :before " +
+            "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING id, buyer_id, total_amount";
+    private static final String CURRENT_STATUS_SQL =
+            "SELECT id, farmer_id, status FROM orders WHERE id IN (:ids)";
+    private static final String QUANTITIES_SQL =
+            "SELECT product_id, SUM(quantity) AS quantity FROM order_items " +
+            "WHERE order_id IN (:ids) GROUP BY product_id";
+
+    private final UserService userService;
+    private final StockService stockService;
+    private final UserStatsService userStatsService;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public enum Action {
+        CONFIRM(Order.OrderStatus.PENDING, Order.OrderStatus.CONFIRMED),
+        REJECT(Order.OrderStatus.PENDING, Order.OrderStatus.REJECTED),
+        COMPLETE(Order.OrderStatus.CONFIRMED, Order.OrderStatus.COMPLETED);
+
+        private final Order.OrderStatus from;
+        private final Order.OrderStatus to;
+
+        Action(Order.OrderStatus from, Order.OrderStatus to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public static Action fromPath(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown bulk action: " + value);
+            }
+        }
+    }
+
+    /**
+     * Apply the action to the requested orders and report the outcome of each one
+     */
+    @Transactional
+    public BulkOrderActionResponse apply(String farmerEmail, Action action, BulkOrderActionRequest request) {
+        boolean byIds = request.getIds() != null && !request.getIds().isEmpty();
+        if (byIds == (request.getCreatedBefore() != null)) {
+            throw new BadRequestException("Give either ids or createdBefore");
+        }
+        Long farmerId = userService.findIdByEmail(farmerEmail);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("farmerId", farmerId)
+                .addValue("from", action.from.name())
+                .addValue("to", action.to.name());
+
+        Set<Long> requested = new LinkedHashSet<>();
+        Map<Long, UserStatsService.OrderChange> changed = new LinkedHashMap<>();
+        RowCallbackHandler collectChanged = rs -> {
+            changed.put(rs.getLong("id"), new UserStatsService.OrderChange(
+                    rs.getLong("buyer_id"), farmerId, rs.getBigDecimal("total_amount"), action.from, action.to));
+        };
+        if (byIds) {
+            request.getIds().stream().filter(Objects::nonNull).forEach(requested::add);
+            if (requested.size() > MAX_ORDERS) {
+                throw new BadRequestException("At most " + MAX_ORDERS + " orders can be changed at once");
+            }
+            namedJdbcTemplate.query(TRANSITION_BY_IDS_SQL, params.addValue("ids", requested), collectChanged);
+        } else {
+            namedJdbcTemplate.query(TRANSITION_BEFORE_SQL, params
+                    .addValue("before", Timestamp.valueOf(request.getCreatedBefore()))
+                    .addValue("limit", MAX_ORDERS), collectChanged);
+            requested.addAll(changed.keySet());
+        }
+
+        if (!changed.isEmpty()) {
+            userStatsService.recordOrders(changed.values());
+            if (action == Action.REJECT) {
+                restoreStock(farmerId, List.copyOf(changed.keySet()));
+            } else if (action == Action.COMPLETE) {
+                salesAnalyticsService.recordCompleted(changed.keySet());
+            }
+        }
+        return buildResponse(action, farmerId, requested, changed.keySet());
+    }
+
+    private void restoreStock(Long farmerId, List<Long> orderIds) {
+        Map<Long, BigDecimal> quantities = new LinkedHashMap<>();
+        namedJdbcTemplate.query(QUANTITIES_SQL, new MapSqlParameterSource("ids", orderIds),
+                rs -> {
+                    quantities.put(rs.getLong("product_id"), rs.getBigDecimal("quantity"));
+                });
+        stockService.restore(quantities);
+        eventPublisher.publishEvent(new ProductChangedEvent(
+                farmerId, List.copyOf(quantities.keySet()), ProductChangedEvent.ChangeType.STOCK));
+    }
+
+    /**
+     * Outcome per requested id; orders that did not change are looked up once to say why
+     */
+    private BulkOrderActionResponse buildResponse(Action action, Long farmerId, Set<Long> requested,
+                                                  Set<Long> changed) {
+        Map<Long, CurrentStatus> unchanged = new HashMap<>();
+        List<Long> missed = requested.stream().filter(id -> !changed.contains(id)).toList();
+        if (!missed.isEmpty()) {
+            namedJdbcTemplate.query(CURRENT_STATUS_SQL, new MapSqlParameterSource("ids", missed), rs -> {
+                unchanged.put(rs.getLong("id"), new CurrentStatus(rs.getLong("farmer_id"), rs.getString("status")));
+            });
+        }
+
+        List<BulkOrderActionResponse.Outcome> results = new ArrayList<>(requested.size());
+        for (Long id : requested) {
+            BulkOrderActionResponse.Outcome.OutcomeBuilder outcome = BulkOrderActionResponse.Outcome.builder()
+                    .orderId(id);
+            if (changed.contains(id)) {
+                outcome.success(true).status(action.to.name());
+            } else {
+                CurrentStatus current = unchanged.get(id);
+                if (current == null || !farmerId.equals(current.farmerId())) {
+                    outcome.message("Order not found");
+                } else {
+                    outcome.status(current.status())
+                            .message("Only " + action.from.name().toLowerCase(Locale.ROOT) + " orders can be "
+                                    + action.to.name().toLowerCase(Locale.ROOT));
+                }
+            }
+            results.add(outcome.build());
+        }
+
+        return BulkOrderActionResponse.builder()
+                .action(action.name())
+                .succeeded(changed.size())
+                .failed(requested.size() - changed.size())
+                .results(results)
+                .build();
+    }
+
+    private record CurrentStatus(Long farmerId, String status) {
+    }
+}
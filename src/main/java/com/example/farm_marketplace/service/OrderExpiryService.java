@@ -0,0 +1,116 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.entity.Order;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Expires PENDING orders nobody acted on within the configured TTL and gives
+ * their stock back. Candidates are read oldest first through the
+ * (status, created_at) index and locked with FOR UPDATE SKIP LOCKED, so several
+ * nodes can run the job at once without touching the same order, and an order
+ * a farmer or buyer is changing right now is simply left for the next run.
+ * Stock is restored with one batched update per batch of orders.
+ */
+@Slf4j
+@Service
+public class OrderExpiryService {
+    private static final String LOCK_EXPIRED_SQL =
+            "SELECT id FROM orders WHERE status = 'PENDING' AND created_at < ? " +
+            "ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String EXPIRE_SQL =
+            "UPDATE orders SET status = 'EXPIRED', updated_at = now() WHERE id IN (:ids) " +
+            "RETURNING buyer_id, farmer_id, total_amount";
+    private static final String QUANTITIES_SQL =
+            "SELECT oi.product_id, p.farmer_id, SUM(oi.quantity) AS quantity FROM order_items oi " +
+            "JOIN products p ON p.id = oi.product_id WHERE oi.order_id IN (:ids) GROUP BY oi.product_id, p.farmer_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockService stockService;
+    private final UserStatsService userStatsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration pendingTtl;
+    private final int batchSize;
+
+    public OrderExpiryService(
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            StockService stockService,
+            UserStatsService userStatsService,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${orders.pending-ttl-minutes:1440}") long pendingTtlMinutes,
+            @Value("${orders.expiry.batch-size:200}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stockService = stockService;
+        this.userStatsService = userStatsService;
+        this.eventPublisher = eventPublisher;
+        this.pendingTtl = Duration.ofMinutes(pendingTtlMinutes);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Expire stale pending orders batch by batch until none are left; a TTL of 0 disables expiry
+     */
+    @Scheduled(fixedDelayString = "${orders.expiry.interval-ms:60000}")
+    public void expireStalePendingOrders() {
+        if (pendingTtl.isZero()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(pendingTtl);
+        int total = 0;
+        int expired;
+        do {
+            expired = transactionTemplate.execute(status -> expireBatch(cutoff));
+            total += expired;
+        } while (expired == batchSize);
+
+        if (total > 0) {
+            log.info("Expired {} pending orders older than {}", total, cutoff);
+        }
+    }
+
+    private int expireBatch(LocalDateTime cutoff) {
+        List<Long> orderIds = jdbcTemplate.queryForList(LOCK_EXPIRED_SQL, Long.class,
+                Timestamp.valueOf(cutoff), batchSize);
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", orderIds);
+        userStatsService.recordOrders(namedJdbcTemplate.query(EXPIRE_SQL, params,
+                (rs, rowNum) -> new UserStatsService.OrderChange(rs.getLong("buyer_id"), rs.getLong("farmer_id"),
+                        rs.getBigDecimal("total_amount"), Order.OrderStatus.PENDING, Order.OrderStatus.EXPIRED)));
+
+        Map<Long, BigDecimal> quantities = new LinkedHashMap<>();
+        Map<Long, List<Long>> productIdsByFarmer = new HashMap<>();
+        namedJdbcTemplate.query(QUANTITIES_SQL, params, rs -> {
+            long productId = rs.getLong("product_id");
+            quantities.put(productId, rs.getBigDecimal("quantity"));
+            productIdsByFarmer.computeIfAbsent(rs.getLong("farmer_id"), id -> new ArrayList<>()).add(productId);
+        });
+        stockService.restore(quantities);
+
+        productIdsByFarmer.forEach((farmerId, productIds) -> eventPublisher.publishEvent(
+                new ProductChangedEvent(farmerId, productIds, ProductChangedEvent.ChangeType.STOCK)));
+        return orderIds.size();
+    }
+}
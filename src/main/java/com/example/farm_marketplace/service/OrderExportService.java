@@ -0,0 +1,352 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.entity.Order;
+import com.example.farm_marketplace.exception.BadRequestException;
+import com.example.farm_marketplace.exception.ServiceUnavailableException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports a user's orders, one line per order item, as CSV or JSON lines.
+ * Rows are read through a server-side cursor (a fetch size inside a read-only
+ * transaction) and written straight to the response, flushing every chunk, so
+ * heap use stays the same however long the history is. Each running export holds
+ * a pooled connection for the whole download, so only a few may run at once; more
+ * are refused rather than left to starve the pool.
+ */
+@Service
+public class OrderExportService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] COLUMNS = {
+            "order_id", "created_at", "updated_at", "status", "%s_name", "%s_phone",
+            "product_id", "product_name", "unit", "quantity", "price_each", "line_total", "order_total"};
+
+    private static final String EXPORT_SQL =
+            "SELECT o.id, o.created_at, o.updated_at, o.status, u.name AS party_name, u.phone AS party_phone, " +
+            "oi.product_id, p.name AS product_name, p.unit, oi.quantity, oi.price_each, o.total_amount " +
+            "FROM orders o JOIN users u ON u.id = o.%s JOIN order_items oi ON oi.order_id = o.id " +
+            "LEFT JOIN products p ON p.id = oi.product_id " +
+            "WHERE o.%s = ? AND o.created_at >= ? AND o.created_at < ?%s " +
+            "ORDER BY o.created_at, o.id, oi.id";
+
+    // Open bounds for the date filters
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    public enum Side {
+        // A farmer exports their sales, listing buyers
+        FARMER("farmer_id", "buyer_id", "buyer"),
+        // A buyer exports their orders, listing farmers
+        BUYER("buyer_id", "farmer_id", "farmer");
+
+        private final String ownerColumn;
+        private final String partyColumn;
+        private final String partyName;
+
+        Side(String ownerColumn, String partyColumn, String partyName) {
+            this.ownerColumn = ownerColumn;
+            this.partyColumn = partyColumn;
+            this.partyName = partyName;
+        }
+    }
+
+    public enum Format {
+        CSV("text/csv", "csv"), JSON_LINES("application/x-ndjson", "jsonl");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public static Format fromParam(String value) {
+            if (value == null || value.isBlank() || value.equalsIgnoreCase("csv")) {
+                return CSV;
+            }
+            if (value.equalsIgnoreCase("jsonl") || value.equalsIgnoreCase("ndjson")) {
+                return JSON_LINES;
+            }
+            throw new BadRequestException("Export format must be csv or jsonl");
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+    }
+
+    private final UserService userService;
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final int chunkRows;
+    private final Semaphore runningExports;
+    private final long timeoutMillis;
+
+    public OrderExportService(
+            UserService userService,
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            @Value("${orders.export.fetch-size:500}") int fetchSize,
+            @Value("${orders.export.chunk-rows:1000}") int chunkRows,
+            @Value("${orders.export.max-concurrent:2}") int maxConcurrent,
+            @Value("${orders.export.timeout-minutes:30}") long timeoutMinutes) {
+        this.userService = userService;
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.chunkRows = chunkRows;
+        this.runningExports = new Semaphore(maxConcurrent);
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+    }
+
+    /**
+     * How long an export response may stream before the request times out
+     */
+    public long timeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * File name for the download, e.g. sales-2024-05-01.csv.gz
+     */
+    public String filename(Side side, Format format, boolean gzip) {
+        String prefix = side == Side.FARMER ? "sales" : "orders";
+        return prefix + "-" + LocalDate.now() + "." + format.extension + (gzip ? ".gz" : "");
+    }
+
+    /**
+     * Body that streams the export when the response is written. The user and filters are
+     * checked and a slot among the running exports taken now, so errors still become
+     * a normal error response; the slot is given back when the body has been written.
+     */
+    public StreamingResponseBody export(String email, Side side, Format format, boolean gzip, String status,
+                                        LocalDateTime from, LocalDateTime to) {
+        Long userId = userService.findIdByEmail(email);
+        List<Object> params = new ArrayList<>(List.of(
+                userId, Timestamp.valueOf(from == null ? EARLIEST : from), Timestamp.valueOf(to == null ? LATEST : to)));
+        String statusClause = "";
+        if (status != null && !status.isBlank()) {
+            params.add(parseStatus(status).name());
+            statusClause = " AND o.status = ?";
+        }
+        String sql = String.format(EXPORT_SQL, side.partyColumn, side.ownerColumn, statusClause);
+        String[] header = new String[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            header[i] = String.format(COLUMNS[i], side.partyName);
+        }
+
+        if (!runningExports.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many exports are running, please try again shortly");
+        }
+        return outputStream -> {
+            try {
+                write(outputStream, format, gzip, header, sql, params);
+            } finally {
+                runningExports.release();
+            }
+        };
+    }
+
+    private void write(OutputStream outputStream, Format format, boolean gzip, String[] header,
+                       String sql, List<Object> params) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE, true) : outputStream;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+        RowWriter rows = format == Format.CSV ? new CsvRowWriter(writer) : new JsonLineRowWriter(writer, header);
+        rows.start(header);
+
+        long[] written = {0};
+        try {
+            readOnlyTransaction.executeWithoutResult(tx -> cursorJdbcTemplate.query(sql, rs -> {
+                try {
+                    rows.write(readRow(rs));
+                    if (++written[0] % chunkRows == 0) {
+                        rows.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, params.toArray()));
+        } catch (UncheckedIOException e) {
+            // Client went away mid-download; surface the original I/O error
+            throw e.getCause();
+        }
+
+        rows.finish();
+        writer.flush();
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+    }
+
+    private static Object[] readRow(ResultSet rs) throws SQLException {
+        BigDecimal quantity = rs.getBigDecimal("quantity");
+        BigDecimal priceEach = rs.getBigDecimal("price_each");
+        return new Object[]{
+                rs.getLong("id"),
+                toLocal(rs.getTimestamp("created_at")),
+                toLocal(rs.getTimestamp("updated_at")),
+                rs.getString("status"),
+                rs.getString("party_name"),
+                rs.getString("party_phone"),
+                rs.getLong("product_id"),
+                rs.getString("product_name"),
+                rs.getString("unit"),
+                quantity,
+                priceEach,
+                quantity.multiply(priceEach),
+                rs.getBigDecimal("total_amount")};
+    }
+
+    private static LocalDateTime toLocal(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    private static Order.OrderStatus parseStatus(String status) {
+        try {
+            return Order.OrderStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown order status: " + status);
+        }
+    }
+
+    private interface RowWriter {
+        void start(String[] header) throws IOException;
+
+        void write(Object[] values) throws IOException;
+
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * RFC 4180 CSV: fields with a comma, quote or line break are quoted, quotes doubled.
+     * Text starting like a spreadsheet formula gets a leading apostrophe, so names and
+     * phones typed by users are shown as text rather than evaluated.
+     */
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start(String[] header) throws IOException {
+            write(header);
+        }
+
+        @Override
+        public void write(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(field(values[i]));
+            }
+            writer.write("\r\n");
+        }
+
+        private static String field(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+            if (value instanceof String && !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+                text = "'" + text;
+            }
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void finish() {
+            // Nothing trails the last row
+        }
+    }
+
+    /**
+     * One JSON object per line, keyed by the header names
+     */
+    private class JsonLineRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private final String[] names;
+
+        JsonLineRowWriter(Writer writer, String[] names) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(new SerializedString("\n"));
+            this.names = names;
+        }
+
+        @Override
+        public void start(String[] header) {
+            // Keys repeat on every line
+        }
+
+        @Override
+        public void write(Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                generator.writeFieldName(names[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Long number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.writeRaw('\n');
+            generator.flush();
+        }
+    }
+}
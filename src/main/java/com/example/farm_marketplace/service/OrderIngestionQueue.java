@@ -0,0 +1,296 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.exception.OutcomeUnknownException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Optional group commit for order placement. When enabled, callers hand their
+ * unit of work to a bounded queue and a single writer thread runs up to
+ * max-batch-size of them in one transaction, each behind its own savepoint, so
+ * many orders share one commit (and one fsync). A failing order is rolled back
+ * to its savepoint and only its caller sees the error; results are handed out
+ * after the shared commit. When the queue is full the caller runs its work in
+ * its own transaction instead. Callers wait a bounded time; a job the writer has
+ * not started by then is abandoned and never runs.
+ */
+@Slf4j
+@Component
+public class OrderIngestionQueue {
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long resultTimeoutMillis;
+    private final BlockingQueue<Job<?>> queue;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public OrderIngestionQueue(
+            @Value("${orders.ingestion.enabled:false}") boolean enabled,
+            @Value("${orders.ingestion.queue-capacity:1000}") int queueCapacity,
+            @Value("${orders.ingestion.max-batch-size:50}") int maxBatchSize,
+            @Value("${orders.ingestion.max-wait-micros:500}") long maxWaitMicros,
+            @Value("${orders.ingestion.result-timeout-seconds:30}") long resultTimeoutSeconds,
+            TransactionTemplate transactionTemplate,
+            DataSource dataSource) {
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.resultTimeoutMillis = TimeUnit.SECONDS.toMillis(resultTimeoutSeconds);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.transactionTemplate = transactionTemplate;
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::drainLoop, "order-ingestion-writer");
+        writer.setDaemon(true);
+        // Last resort: if the writer dies anyway, stop queueing so callers use their own transactions
+        writer.setUncaughtExceptionHandler((thread, e) -> {
+            running = false;
+            log.error("Order ingestion writer died; orders now run in their own transactions", e);
+            failQueued(new IllegalStateException("Order ingestion writer died", e));
+        });
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        failQueued(new IllegalStateException("Order ingestion is shutting down"));
+    }
+
+    private void failQueued(RuntimeException error) {
+        Job<?> job;
+        while ((job = queue.poll()) != null) {
+            job.result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Run work in a transaction: a shared micro-batch transaction when ingestion is
+     * enabled, otherwise (or when the queue is full) a transaction of its own
+     */
+    public <T> T execute(Supplier<T> work) {
+        if (!running) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+        Job<T> job = new Job<>(work);
+        if (!queue.offer(job)) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+        return await(job);
+    }
+
+    /**
+     * Wait for the job's outcome. If the writer has not started it in time the job is
+     * abandoned, so it cannot commit after the caller has been told it failed; a job
+     * already running gets one more timeout to finish its transaction. If it still has
+     * not finished, or the wait is interrupted after it started, the outcome is unknown.
+     */
+    private <T> T await(Job<T> job) {
+        try {
+            try {
+                return job.result.get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (job.abandon()) {
+                    throw new IllegalStateException("Order was not placed: the ingestion queue did not run it in time");
+                }
+                return job.result.get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw new OutcomeUnknownException("Timed out waiting for order placement; the order may still be placed", e, job.result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (job.abandon()) {
+                throw new IllegalStateException("Order was not placed: interrupted before it ran", e);
+            }
+            throw new OutcomeUnknownException("Interrupted while the order was being placed; it may still be placed", e, job.result);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void drainLoop() {
+        List<Job<?>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    Job<?> next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                runBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(job -> job.result.completeExceptionally(
+                        new IllegalStateException("Order ingestion is shutting down")));
+                return;
+            } catch (Throwable e) {
+                // Anything, Errors included, fails only this batch; the writer keeps draining
+                log.error("Order ingestion batch failed", e);
+                RuntimeException error = e instanceof RuntimeException runtime
+                        ? runtime : new IllegalStateException("Order ingestion batch failed", e);
+                batch.forEach(job -> job.result.completeExceptionally(error));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Run all jobs in one transaction, each behind a savepoint, and complete callers after commit
+     */
+    private void runBatch(List<Job<?>> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Connection connection = DataSourceUtils.getConnection(dataSource);
+                for (Job<?> job : batch) {
+                    if (job.start()) {
+                        runJob(job, connection);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // The shared commit failed: no order of this batch was placed
+            batch.forEach(job -> job.result.completeExceptionally(e));
+            return;
+        }
+        batch.forEach(Job::publish);
+    }
+
+    private void runJob(Job<?> job, Connection connection) {
+        List<TransactionSynchronization> before = TransactionSynchronizationManager.getSynchronizations();
+        Savepoint savepoint;
+        try {
+            savepoint = connection.setSavepoint();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot create savepoint for order", e);
+        }
+        try {
+            job.run();
+            entityManager.flush();
+            connection.releaseSavepoint(savepoint);
+        } catch (Throwable e) {
+            try {
+                connection.rollback(savepoint);
+            } catch (SQLException rollbackFailure) {
+                throw new IllegalStateException("Cannot roll back order savepoint", rollbackFailure);
+            }
+            // Forget entities of the failed order; earlier orders are already flushed
+            entityManager.clear();
+            discardSynchronizationsSince(before);
+            job.fail(e instanceof RuntimeException runtime ? runtime : new IllegalStateException(e));
+            if (e instanceof Error error) {
+                // The shared transaction cannot be trusted after an Error; fail the whole batch
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Tell synchronizations registered by a rolled back order that it rolled back,
+     * and remove them so the shared commit does not treat it as committed
+     */
+    private static void discardSynchronizationsSince(List<TransactionSynchronization> before) {
+        List<TransactionSynchronization> added = new ArrayList<>(TransactionSynchronizationManager.getSynchronizations());
+        added.removeAll(before);
+        if (added.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        before.forEach(TransactionSynchronizationManager::registerSynchronization);
+        added.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+
+    private static final class Job<T> {
+        private static final int QUEUED = 0;
+        private static final int STARTED = 1;
+        private static final int ABANDONED = 2;
+
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private T value;
+        private RuntimeException error;
+
+        private Job(Supplier<T> work) {
+            this.work = work;
+        }
+
+        /**
+         * Claim the job for the writer; false when its caller already gave up on it
+         */
+        private boolean start() {
+            return state.compareAndSet(QUEUED, STARTED);
+        }
+
+        /**
+         * Give up on a job the writer has not started; false when it is already running
+         */
+        private boolean abandon() {
+            return state.compareAndSet(QUEUED, ABANDONED);
+        }
+
+        private void run() {
+            value = work.get();
+        }
+
+        private void fail(RuntimeException e) {
+            error = e;
+        }
+
+        private void publish() {
+            if (state.get() == ABANDONED) {
+                return;
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+}
@@ -1,37 +1,99 @@
 package com.example.farm_marketplace.service;
 
+import com.example.farm_marketplace.dto.CheckoutRequest;
+import com.example.farm_marketplace.dto.CheckoutResponse;
+import com.example.farm_marketplace.dto.CursorPage;
 import com.example.farm_marketplace.dto.OrderRequest;
 import com.example.farm_marketplace.dto.OrderResponse;
 import com.example.farm_marketplace.entity.Order;
 import com.example.farm_marketplace.entity.OrderItem;
 import com.example.farm_marketplace.entity.Product;
 import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.entity.UserStats;
+import com.example.farm_marketplace.event.OrderPlacedEvent;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.exception.BadRequestException;
 import com.example.farm_marketplace.exception.InsufficientStockException;
 import com.example.farm_marketplace.exception.ResourceNotFoundException;
+import com.example.farm_marketplace.repository.OrderItemRepository;
 import com.example.farm_marketplace.repository.OrderRepository;
 import com.example.farm_marketplace.repository.ProductRepository;
+import com.example.farm_marketplace.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    // Open bounds for the order listing date filters
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO order_items (order_id, product_id, quantity, price_each) VALUES (?, ?, ?, ?)";
+    private static final String TRANSITION_SQL =
+            "UPDATE orders SET status = ?, updated_at = now() " +
+            "WHERE id = ? AND farmer_id = ? AND status = ? RETURNING buyer_id, total_amount";
+
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
     private final ProductRepository productRepository;
     private final UserService userService;
+    private final StockService stockService;
+    private final UserStatsService userStatsService;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConflictRetryExecutor conflictRetryExecutor;
+    private final IdempotencyService idempotencyService;
+    private final OrderIngestionQueue orderIngestionQueue;
+    private final TransactionTemplate transactionTemplate;
 
     /**
-     * Create a new order (Buyer only)
+     * Create a new order (Buyer only), retrying when it loses a race on a product
      */
-    @Transactional
     public OrderResponse createOrder(String buyerEmail, OrderRequest request) {
+        return placeOrderWithRetry(buyerEmail, request, null);
+    }
+
+    /**
+     * Create a new order at most once per idempotency key; a replay returns the
+     * first response without touching stock
+     */
+    public OrderResponse createOrder(String buyerEmail, OrderRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return createOrder(buyerEmail, request);
+        }
+        return idempotencyService.execute(buyerEmail, idempotencyKey, request, OrderResponse.class,
+                claim -> placeOrderWithRetry(buyerEmail, request, claim));
+    }
+
+    private OrderResponse placeOrderWithRetry(String buyerEmail, OrderRequest request,
+                                              IdempotencyService.Claim claim) {
+        List<Long> productIds = request.getItems().stream()
+                .map(OrderRequest.OrderItemRequest::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+        return conflictRetryExecutor.execute(productIds,
+                () -> orderIngestionQueue.execute(() -> placeOrder(buyerEmail, request, claim)));
+    }
+
+    private OrderResponse placeOrder(String buyerEmail, OrderRequest request, IdempotencyService.Claim claim) {
         User buyer = userService.findByEmail(buyerEmail);
 
         if (!"BUYER".equals(buyer.getRole())) {
@@ -52,11 +114,15 @@ public class OrderService {
                 .items(new ArrayList<>())
                 .build();
 
-        BigDecimal totalAmount = BigDecimal.ZERO;
+        Map<Long, BigDecimal> quantities = quantitiesOf(request.getItems());
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
 
-        for (OrderRequest.OrderItemRequest itemRequest : request.getItems()) {
-            Product product = productRepository.findById(itemRequest.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        for (Long productId : quantities.keySet()) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ResourceNotFoundException("Product not found");
+            }
 
             if (!product.getFarmer().getId().equals(farmer.getId())) {
                 throw new RuntimeException("All products must be from the same farmer");
@@ -65,85 +131,206 @@ public class OrderService {
             if (!product.getActive()) {
                 throw new RuntimeException("Product " + product.getName() + " is not active");
             }
+        }
+
+        deductOrThrow(quantities, products);
+
+        List<OrderItem> items = buildItems(order, request.getItems(), products);
+        order = orderRepository.save(order);
+        insertItems(items);
+        userStatsService.recordOrders(List.of(UserStatsService.OrderChange.of(order, null, Order.OrderStatus.PENDING)));
+        publishStockChange(farmer.getId(), quantities.keySet());
+        eventPublisher.publishEvent(new OrderPlacedEvent(
+                order.getId(), buyer.getState(), buyer.getDistrict(), List.copyOf(quantities.keySet())));
+
+        OrderResponse response = mapToResponse(order, items);
+        if (claim != null) {
+            claim.complete(response);
+        }
+        return response;
+    }
+
+    /**
+     * Check out a cart that may span several farmers: one order per farmer, all
+     * placed in one transaction or none at all
+     */
+    public CheckoutResponse checkout(String buyerEmail, CheckoutRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return checkoutWithRetry(buyerEmail, request, null);
+        }
+        return idempotencyService.execute(buyerEmail, idempotencyKey, request, CheckoutResponse.class,
+                claim -> checkoutWithRetry(buyerEmail, request, claim));
+    }
+
+    private CheckoutResponse checkoutWithRetry(String buyerEmail, CheckoutRequest request,
+                                               IdempotencyService.Claim claim) {
+        List<Long> productIds = request.getItems().stream()
+                .map(OrderRequest.OrderItemRequest::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+        return conflictRetryExecutor.execute(productIds,
+                () -> orderIngestionQueue.execute(() -> placeCheckout(buyerEmail, request, claim)));
+    }
+
+    private CheckoutResponse placeCheckout(String buyerEmail, CheckoutRequest request,
+                                           IdempotencyService.Claim claim) {
+        User buyer = userService.findByEmail(buyerEmail);
+
+        if (!"BUYER".equals(buyer.getRole())) {
+            throw new RuntimeException("Only buyers can create orders");
+        }
 
-            if (product.getQtyAvailable().compareTo(itemRequest.getQuantity()) < 0) {
-                throw new InsufficientStockException(
-                        "Insufficient stock for " + product.getName() +
-                                ". Available: " + product.getQtyAvailable() + " " + product.getUnit()
-                );
+        // Products and their farmers in one query; every line is validated before any stock moves
+        Map<Long, BigDecimal> quantities = quantitiesOf(request.getItems());
+        Map<Long, Product> products = productRepository.findAllWithFarmerByIdIn(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        for (Long productId : quantities.keySet()) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ResourceNotFoundException("Product not found");
             }
 
-            // Deduct quantity using optimistic locking
-            product.setQtyAvailable(product.getQtyAvailable().subtract(itemRequest.getQuantity()));
-            productRepository.save(product);
+            if (!product.getActive()) {
+                throw new RuntimeException("Product " + product.getName() + " is not active");
+            }
+        }
 
-            OrderItem orderItem = OrderItem.builder()
-                    .order(order)
-                    .product(product)
-                    .quantity(itemRequest.getQuantity())
-                    .priceEach(product.getPrice())
-                    .build();
+        deductOrThrow(quantities, products);
 
-            order.getItems().add(orderItem);
+        Map<Long, List<OrderRequest.OrderItemRequest>> linesByFarmer = new LinkedHashMap<>();
+        for (OrderRequest.OrderItemRequest line : request.getItems()) {
+            Long farmerId = products.get(line.getProductId()).getFarmer().getId();
+            linesByFarmer.computeIfAbsent(farmerId, id -> new ArrayList<>()).add(line);
+        }
 
-            BigDecimal itemTotal = product.getPrice().multiply(itemRequest.getQuantity());
-            totalAmount = totalAmount.add(itemTotal);
+        List<Order> orders = new ArrayList<>(linesByFarmer.size());
+        List<List<OrderItem>> itemsPerOrder = new ArrayList<>(linesByFarmer.size());
+        List<OrderItem> allItems = new ArrayList<>(request.getItems().size());
+        for (List<OrderRequest.OrderItemRequest> lines : linesByFarmer.values()) {
+            Order order = Order.builder()
+                    .buyer(buyer)
+                    .farmer(products.get(lines.get(0).getProductId()).getFarmer())
+                    .status(Order.OrderStatus.PENDING)
+                    .totalAmount(BigDecimal.ZERO)
+                    .items(new ArrayList<>())
+                    .build();
+            List<OrderItem> items = buildItems(order, lines, products);
+            orders.add(orderRepository.save(order));
+            itemsPerOrder.add(items);
+            allItems.addAll(items);
         }
+        insertItems(allItems);
+        userStatsService.recordOrders(orders.stream()
+                .map(order -> UserStatsService.OrderChange.of(order, null, Order.OrderStatus.PENDING))
+                .toList());
 
-        order.setTotalAmount(totalAmount);
-        order = orderRepository.save(order);
+        List<OrderResponse> responses = new ArrayList<>(orders.size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            List<Long> productIds = itemsPerOrder.get(i).stream()
+                    .map(item -> item.getProduct().getId())
+                    .distinct()
+                    .toList();
+            publishStockChange(order.getFarmer().getId(), productIds);
+            eventPublisher.publishEvent(new OrderPlacedEvent(
+                    order.getId(), buyer.getState(), buyer.getDistrict(), productIds));
+            responses.add(mapToResponse(order, itemsPerOrder.get(i)));
+            totalAmount = totalAmount.add(order.getTotalAmount());
+        }
 
-        return mapToResponse(order);
+        CheckoutResponse response = CheckoutResponse.builder()
+                .orders(responses)
+                .totalAmount(totalAmount)
+                .build();
+        if (claim != null) {
+            claim.complete(response);
+        }
+        return response;
     }
 
     /**
-     * Get buyer orders with optional status filter - UPDATED METHOD!
+     * Get one page of a buyer's orders, newest first, optionally filtered by status and
+     * creation time [from, to); each page is loaded with two queries
      */
-    public List<OrderResponse> getBuyerOrders(String buyerEmail, String status) {
-        User buyer = userService.findByEmail(buyerEmail);
+    public CursorPage<OrderResponse> getBuyerOrderPage(String buyerEmail, String status, LocalDateTime from,
+                                                       LocalDateTime to, String cursor, Integer limit) {
+        Long buyerId = userService.findIdByEmail(buyerEmail);
+        int pageSize = ProductService.resolvePageSize(limit);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<Order> rows = orderRepository.findBuyerOrdersAfter(buyerId, parseStatuses(status),
+                from == null ? EARLIEST : from, to == null ? LATEST : to,
+                position.getTimestamp(), position.getId(), PageRequest.of(0, pageSize + 1));
+        return toPage(rows, pageSize);
+    }
 
-        List<Order> orders;
-        if (status != null && !status.isBlank()) {
-            try {
-                Order.OrderStatus orderStatus = Order.OrderStatus.valueOf(status.toUpperCase());
-                orders = orderRepository.findByBuyerIdAndStatus(buyer.getId(), orderStatus);
-            } catch (IllegalArgumentException e) {
-                // Invalid status, return all orders
-                orders = orderRepository.findByBuyerId(buyer.getId());
-            }
-        } else {
-            orders = orderRepository.findByBuyerId(buyer.getId());
+    /**
+     * Get one page of a farmer's orders, newest first, optionally filtered by status and
+     * creation time [from, to); each page is loaded with two queries
+     */
+    public CursorPage<OrderResponse> getFarmerOrderPage(String farmerEmail, String status, LocalDateTime from,
+                                                        LocalDateTime to, String cursor, Integer limit) {
+        Long farmerId = userService.findIdByEmail(farmerEmail);
+        int pageSize = ProductService.resolvePageSize(limit);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<Order> rows = orderRepository.findFarmerOrdersAfter(farmerId, parseStatuses(status),
+                from == null ? EARLIEST : from, to == null ? LATEST : to,
+                position.getTimestamp(), position.getId(), PageRequest.of(0, pageSize + 1));
+        return toPage(rows, pageSize);
+    }
+
+    private CursorPage<OrderResponse> toPage(List<Order> rows, int pageSize) {
+        // One extra row was fetched to learn whether another page exists
+        boolean hasMore = rows.size() > pageSize;
+        List<Order> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Order last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
         }
 
-        return orders.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return CursorPage.<OrderResponse>builder()
+                .items(mapWithItems(page))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .limit(pageSize)
+                .build();
     }
 
     /**
-     * Get farmer orders with optional status filter - UPDATED METHOD!
+     * Map orders whose buyer and farmer are already loaded, fetching all their items
+     * and products with one more query
      */
-    public List<OrderResponse> getFarmerOrders(String farmerEmail, String status) {
-        User farmer = userService.findByEmail(farmerEmail);
-
-        List<Order> orders;
-        if (status != null && !status.isBlank()) {
-            try {
-                Order.OrderStatus orderStatus = Order.OrderStatus.valueOf(status.toUpperCase());
-                orders = orderRepository.findByFarmerIdAndStatus(farmer.getId(), orderStatus);
-            } catch (IllegalArgumentException e) {
-                // Invalid status, return all orders
-                orders = orderRepository.findByFarmerId(farmer.getId());
-            }
-        } else {
-            orders = orderRepository.findByFarmerId(farmer.getId());
+    private List<OrderResponse> mapWithItems(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<OrderItem>> itemsByOrder = new HashMap<>();
+        List<Long> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        for (OrderItem item : orderItemRepository.findWithProductByOrderIdIn(orderIds)) {
+            itemsByOrder.computeIfAbsent(item.getOrder().getId(), id -> new ArrayList<>()).add(item);
         }
-
         return orders.stream()
-                .map(this::mapToResponse)
+                .map(order -> mapToResponse(order, itemsByOrder.getOrDefault(order.getId(), List.of())))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Statuses matching a filter; a missing filter matches every status
+     */
+    private static List<Order.OrderStatus> parseStatuses(String status) {
+        if (status == null || status.isBlank()) {
+            return List.of(Order.OrderStatus.values());
+        }
+        try {
+            return List.of(Order.OrderStatus.valueOf(status.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown order status: " + status);
+        }
+    }
+
     /**
      * Get order by ID with access control
      */
@@ -161,35 +348,25 @@ public class OrderService {
     }
 
     /**
-     * Confirm order (Farmer only)
+     * Confirm order (Farmer only); returns null when minimal, otherwise the updated order
      */
     @Transactional
-    public OrderResponse confirmOrder(String farmerEmail, Long orderId) {
-        User farmer = userService.findByEmail(farmerEmail);
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
-
-        if (!order.getFarmer().getId().equals(farmer.getId())) {
-            throw new RuntimeException("You can only confirm your own orders");
-        }
-
-        if (order.getStatus() != Order.OrderStatus.PENDING) {
-            throw new RuntimeException("Only pending orders can be confirmed");
-        }
-
-        order.setStatus(Order.OrderStatus.CONFIRMED);
-        order = orderRepository.save(order);
-
-        return mapToResponse(order);
+    public OrderResponse confirmOrder(String farmerEmail, Long orderId, boolean minimal) {
+        return transition(farmerEmail, orderId, Order.OrderStatus.PENDING, Order.OrderStatus.CONFIRMED,
+                "confirm", "pending", minimal);
     }
 
     /**
      * Reject order (Farmer only)
      */
-    @Transactional
     public OrderResponse rejectOrder(String farmerEmail, Long orderId) {
+        return conflictRetryExecutor.execute(orderItemRepository.findProductIdsByOrderId(orderId),
+                () -> transactionTemplate.execute(status -> doRejectOrder(farmerEmail, orderId)));
+    }
+
+    private OrderResponse doRejectOrder(String farmerEmail, Long orderId) {
         User farmer = userService.findByEmail(farmerEmail);
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findByIdForUpdate(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         if (!order.getFarmer().getId().equals(farmer.getId())) {
@@ -201,48 +378,70 @@ public class OrderService {
         }
 
         // Return stock
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            product.setQtyAvailable(product.getQtyAvailable().add(item.getQuantity()));
-            productRepository.save(product);
-        }
+        stockService.restore(quantitiesOf(order));
 
         order.setStatus(Order.OrderStatus.REJECTED);
         order = orderRepository.save(order);
+        userStatsService.recordOrders(List.of(
+                UserStatsService.OrderChange.of(order, Order.OrderStatus.PENDING, Order.OrderStatus.REJECTED)));
+        publishStockChange(order);
 
         return mapToResponse(order);
     }
 
     /**
-     * Complete order (Farmer only) - NEW METHOD!
+     * Complete order (Farmer only); returns null when minimal, otherwise the updated order
      */
     @Transactional
-    public OrderResponse completeOrder(String farmerEmail, Long orderId) {
-        User farmer = userService.findByEmail(farmerEmail);
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+    public OrderResponse completeOrder(String farmerEmail, Long orderId, boolean minimal) {
+        return transition(farmerEmail, orderId, Order.OrderStatus.CONFIRMED, Order.OrderStatus.COMPLETED,
+                "complete", "confirmed", minimal);
+    }
 
-        if (!order.getFarmer().getId().equals(farmer.getId())) {
-            throw new RuntimeException("You can only complete your own orders");
+    /**
+     * Status change whose ownership and status checks are the UPDATE predicate.
+     * The order is only read when the update missed (to say why) or a full response is wanted.
+     */
+    private OrderResponse transition(String farmerEmail, Long orderId, Order.OrderStatus from,
+                                     Order.OrderStatus to, String verb, String expected, boolean minimal) {
+        Long farmerId = userService.findIdByEmail(farmerEmail);
+        List<UserStatsService.OrderChange> changed = jdbcTemplate.query(TRANSITION_SQL,
+                (rs, rowNum) -> new UserStatsService.OrderChange(
+                        rs.getLong("buyer_id"), farmerId, rs.getBigDecimal("total_amount"), from, to),
+                to.name(), orderId, farmerId, from.name());
+
+        if (changed.isEmpty()) {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+            if (!order.getFarmer().getId().equals(farmerId)) {
+                throw new RuntimeException("You can only " + verb + " your own orders");
+            }
+            throw new RuntimeException("Only " + expected + " orders can be " + verb + "d");
         }
-
-        if (order.getStatus() != Order.OrderStatus.CONFIRMED) {
-            throw new RuntimeException("Only confirmed orders can be completed");
+        userStatsService.recordOrders(changed);
+        if (to == Order.OrderStatus.COMPLETED) {
+            salesAnalyticsService.recordCompleted(List.of(orderId));
         }
 
-        order.setStatus(Order.OrderStatus.COMPLETED);
-        order = orderRepository.save(order);
-
-        return mapToResponse(order);
+        if (minimal) {
+            return null;
+        }
+        Order order = orderRepository.findWithPartiesById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+        return mapWithItems(List.of(order)).get(0);
     }
 
     /**
      * Cancel order (Buyer only)
      */
-    @Transactional
     public OrderResponse cancelOrder(String buyerEmail, Long orderId) {
+        return conflictRetryExecutor.execute(orderItemRepository.findProductIdsByOrderId(orderId),
+                () -> transactionTemplate.execute(status -> doCancelOrder(buyerEmail, orderId)));
+    }
+
+    private OrderResponse doCancelOrder(String buyerEmail, Long orderId) {
         User buyer = userService.findByEmail(buyerEmail);
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findByIdForUpdate(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         if (!order.getBuyer().getId().equals(buyer.getId())) {
@@ -254,122 +453,163 @@ public class OrderService {
         }
 
         // Return stock
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            product.setQtyAvailable(product.getQtyAvailable().add(item.getQuantity()));
-            productRepository.save(product);
-        }
+        stockService.restore(quantitiesOf(order));
 
         order.setStatus(Order.OrderStatus.CANCELLED);
         order = orderRepository.save(order);
+        userStatsService.recordOrders(List.of(
+                UserStatsService.OrderChange.of(order, Order.OrderStatus.PENDING, Order.OrderStatus.CANCELLED)));
+        publishStockChange(order);
 
         return mapToResponse(order);
     }
 
     /**
-     * Get farmer dashboard statistics - NEW METHOD!
+     * Get farmer dashboard statistics, read from the maintained counters
      */
     public Map<String, Object> getFarmerStats(String farmerEmail) {
-        User farmer = userService.findByEmail(farmerEmail);
-        List<Order> allOrders = orderRepository.findByFarmerId(farmer.getId());
+        UserStats counters = userStatsService.get(userService.findIdByEmail(farmerEmail));
 
         Map<String, Object> stats = new HashMap<>();
-
-        // Count orders by status
-        long pendingCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.PENDING)
-                .count();
-        long confirmedCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.CONFIRMED)
-                .count();
-        long completedCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.COMPLETED)
-                .count();
-        long rejectedCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.REJECTED)
-                .count();
-
-        // Calculate total revenue (completed orders only)
-        BigDecimal totalRevenue = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.COMPLETED)
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Calculate pending revenue
-        BigDecimal pendingRevenue = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.PENDING ||
-                        o.getStatus() == Order.OrderStatus.CONFIRMED)
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        stats.put("totalOrders", allOrders.size());
-        stats.put("pendingOrders", pendingCount);
-        stats.put("confirmedOrders", confirmedCount);
-        stats.put("completedOrders", completedCount);
-        stats.put("rejectedOrders", rejectedCount);
-        stats.put("totalRevenue", totalRevenue);
-        stats.put("pendingRevenue", pendingRevenue);
-
-        // Get product count
-        List<Product> products = productRepository.findByFarmerId(farmer.getId());
-        stats.put("totalProducts", products.size());
-        stats.put("activeProducts", products.stream().filter(Product::getActive).count());
+        stats.put("totalOrders", counters.getTotalOrders());
+        stats.put("pendingOrders", counters.getPendingOrders());
+        stats.put("confirmedOrders", counters.getConfirmedOrders());
+        stats.put("completedOrders", counters.getCompletedOrders());
+        stats.put("rejectedOrders", counters.getRejectedOrders());
+        stats.put("totalRevenue", counters.getCompletedAmount());
+        stats.put("pendingRevenue", counters.getOpenAmount());
+        stats.put("totalProducts", counters.getTotalProducts());
+        stats.put("activeProducts", counters.getActiveProducts());
 
         return stats;
     }
 
     /**
-     * Get buyer dashboard statistics - NEW METHOD!
+     * Get buyer dashboard statistics, read from the maintained counters
      */
     public Map<String, Object> getBuyerStats(String buyerEmail) {
-        User buyer = userService.findByEmail(buyerEmail);
-        List<Order> allOrders = orderRepository.findByBuyerId(buyer.getId());
+        UserStats counters = userStatsService.get(userService.findIdByEmail(buyerEmail));
 
         Map<String, Object> stats = new HashMap<>();
-
-        // Count orders by status
-        long pendingCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.PENDING)
-                .count();
-        long confirmedCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.CONFIRMED)
-                .count();
-        long completedCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.COMPLETED)
-                .count();
-        long cancelledCount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.CANCELLED)
-                .count();
-
-        // Calculate total spent (completed orders only)
-        BigDecimal totalSpent = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.COMPLETED)
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Calculate pending amount
-        BigDecimal pendingAmount = allOrders.stream()
-                .filter(o -> o.getStatus() == Order.OrderStatus.PENDING ||
-                        o.getStatus() == Order.OrderStatus.CONFIRMED)
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        stats.put("totalOrders", allOrders.size());
-        stats.put("pendingOrders", pendingCount);
-        stats.put("confirmedOrders", confirmedCount);
-        stats.put("completedOrders", completedCount);
-        stats.put("cancelledOrders", cancelledCount);
-        stats.put("totalSpent", totalSpent);
-        stats.put("pendingAmount", pendingAmount);
+        stats.put("totalOrders", counters.getTotalOrders());
+        stats.put("pendingOrders", counters.getPendingOrders());
+        stats.put("confirmedOrders", counters.getConfirmedOrders());
+        stats.put("completedOrders", counters.getCompletedOrders());
+        stats.put("cancelledOrders", counters.getCancelledOrders());
+        stats.put("totalSpent", counters.getCompletedAmount());
+        stats.put("pendingAmount", counters.getOpenAmount());
 
         return stats;
     }
 
+    /**
+     * Ordered quantity per product; duplicate lines for the same product are added up
+     */
+    private static Map<Long, BigDecimal> quantitiesOf(List<OrderRequest.OrderItemRequest> lines) {
+        Map<Long, BigDecimal> quantities = new LinkedHashMap<>();
+        for (OrderRequest.OrderItemRequest line : lines) {
+            quantities.merge(line.getProductId(), line.getQuantity(), BigDecimal::add);
+        }
+        return quantities;
+    }
+
+    /**
+     * Check and deduct stock in the same step, failing with the first product that is short
+     */
+    private void deductOrThrow(Map<Long, BigDecimal> quantities, Map<Long, Product> products) {
+        List<Long> insufficient = stockService.deduct(quantities);
+        if (!insufficient.isEmpty()) {
+            Product product = products.get(insufficient.get(0));
+            BigDecimal available = stockService.available(product);
+            throw new InsufficientStockException(
+                    "Insufficient stock for " + product.getName() +
+                            ". Available: " + available + " " + product.getUnit()
+            );
+        }
+    }
+
+    /**
+     * Items of an order at current product prices; sets the order total
+     */
+    private static List<OrderItem> buildItems(Order order, List<OrderRequest.OrderItemRequest> lines,
+                                              Map<Long, Product> products) {
+        List<OrderItem> items = new ArrayList<>(lines.size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (OrderRequest.OrderItemRequest line : lines) {
+            Product product = products.get(line.getProductId());
+            items.add(OrderItem.builder()
+                    .order(order)
+                    .product(product)
+                    .quantity(line.getQuantity())
+                    .priceEach(product.getPrice())
+                    .build());
+
+            BigDecimal itemTotal = product.getPrice().multiply(line.getQuantity());
+            totalAmount = totalAmount.add(itemTotal);
+        }
+        order.setTotalAmount(totalAmount);
+        return items;
+    }
+
+    private void publishStockChange(Order order) {
+        publishStockChange(order.getFarmer().getId(), quantitiesOf(order).keySet());
+    }
+
+    private void publishStockChange(Long farmerId, Collection<Long> productIds) {
+        eventPublisher.publishEvent(new ProductChangedEvent(
+                farmerId, List.copyOf(productIds), ProductChangedEvent.ChangeType.STOCK));
+    }
+
+    /**
+     * Ordered quantity per product; reads only the product ids, not the products
+     */
+    private static Map<Long, BigDecimal> quantitiesOf(Order order) {
+        Map<Long, BigDecimal> quantities = new LinkedHashMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), BigDecimal::add);
+        }
+        return quantities;
+    }
+
+    /**
+     * Insert the items of new orders as one JDBC batch, setting their generated ids
+     */
+    private void insertItems(List<OrderItem> items) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_ITEM_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        OrderItem item = items.get(i);
+                        ps.setLong(1, item.getOrder().getId());
+                        ps.setLong(2, item.getProduct().getId());
+                        ps.setBigDecimal(3, item.getQuantity());
+                        ps.setBigDecimal(4, item.getPriceEach());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return items.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < items.size() && i < keys.size(); i++) {
+            items.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+
     /**
      * Map Order entity to OrderResponse DTO
      */
     private OrderResponse mapToResponse(Order order) {
-        List<OrderResponse.OrderItemResponse> itemResponses = order.getItems().stream()
+        return mapToResponse(order, order.getItems());
+    }
+
+    private OrderResponse mapToResponse(Order order, List<OrderItem> items) {
+        List<OrderResponse.OrderItemResponse> itemResponses = items.stream()
                 .map(item -> OrderResponse.OrderItemResponse.builder()
                         .id(item.getId())
                         .productId(item.getProduct().getId())
@@ -394,4 +634,4 @@ public class OrderService {
                 .createdAt(order.getCreatedAt())
                 .build();
     }
-}
\ No newline at end of file
+}
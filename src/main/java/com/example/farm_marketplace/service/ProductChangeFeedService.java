@@ -0,0 +1,113 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.ProductChangesResponse;
+import com.example.farm_marketplace.dto.ProductResponse;
+import com.example.farm_marketplace.entity.Product;
+import com.example.farm_marketplace.entity.ProductTombstone;
+import com.example.farm_marketplace.exception.BadRequestException;
+import com.example.farm_marketplace.repository.ProductRepository;
+import com.example.farm_marketplace.repository.ProductTombstoneRepository;
+import com.example.farm_marketplace.util.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Incremental catalog sync for clients that keep a local copy of the catalog.
+ * Changed products are read through the (updated_at, id) index and deletions
+ * through the tombstone table, so a call costs in proportion to what changed.
+ * Rows newer than a short safety lag are held back until the next call, so a
+ * transaction that commits late with an older timestamp is not skipped.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ProductChangeFeedService {
+    private static final KeysetCursor BEGINNING = new KeysetCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    private final ProductRepository productRepository;
+    private final ProductTombstoneRepository tombstoneRepository;
+    private final long safetyLagMillis;
+
+    public ProductChangeFeedService(
+            ProductRepository productRepository,
+            ProductTombstoneRepository tombstoneRepository,
+            @Value("${product.changes.safety-lag-ms:5000}") long safetyLagMillis) {
+        this.productRepository = productRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.safetyLagMillis = safetyLagMillis;
+    }
+
+    /**
+     * Products created, updated or deactivated and ids deleted since the token.
+     * Without a token the feed starts from the beginning, i.e. a full sync in pages.
+     */
+    public ProductChangesResponse getChanges(String since, Integer limit) {
+        int pageSize = ProductService.resolvePageSize(limit);
+        ChangeToken token = ChangeToken.decode(since);
+        LocalDateTime until = LocalDateTime.now().minusNanos(safetyLagMillis * 1_000_000);
+
+        // Fetch one extra row of each kind to learn whether more changes are waiting
+        List<Product> products = productRepository.findChangedAfter(
+                token.products.getTimestamp(), token.products.getId(), until, PageRequest.of(0, pageSize + 1));
+        List<ProductTombstone> tombstones = tombstoneRepository.findDeletedAfter(
+                token.deletions.getTimestamp(), token.deletions.getId(), until, PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = products.size() > pageSize || tombstones.size() > pageSize;
+        List<Product> productPage = products.size() > pageSize ? products.subList(0, pageSize) : products;
+        List<ProductTombstone> tombstonePage = tombstones.size() > pageSize
+                ? tombstones.subList(0, pageSize) : tombstones;
+
+        KeysetCursor productsPosition = token.products;
+        if (!productPage.isEmpty()) {
+            Product last = productPage.get(productPage.size() - 1);
+            productsPosition = new KeysetCursor(last.getUpdatedAt(), last.getId());
+        }
+        KeysetCursor deletionsPosition = token.deletions;
+        if (!tombstonePage.isEmpty()) {
+            ProductTombstone last = tombstonePage.get(tombstonePage.size() - 1);
+            deletionsPosition = new KeysetCursor(last.getDeletedAt(), last.getProductId());
+        }
+
+        List<ProductResponse> updated = productPage.stream()
+                .map(ProductService::mapToResponse)
+                .collect(Collectors.toList());
+        List<Long> deleted = tombstonePage.stream()
+                .map(ProductTombstone::getProductId)
+                .collect(Collectors.toList());
+
+        return ProductChangesResponse.builder()
+                .updated(updated)
+                .deleted(deleted)
+                .nextToken(new ChangeToken(productsPosition, deletionsPosition).encode())
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Feed position: one keyset position for product changes and one for deletions
+     */
+    private record ChangeToken(KeysetCursor products, KeysetCursor deletions) {
+
+        String encode() {
+            return products.encode() + "." + deletions.encode();
+        }
+
+        static ChangeToken decode(String token) {
+            if (token == null || token.isBlank()) {
+                return new ChangeToken(BEGINNING, BEGINNING);
+            }
+            int separator = token.indexOf('.');
+            if (separator <= 0 || separator == token.length() - 1) {
+                throw new BadRequestException("Invalid change token");
+            }
+            return new ChangeToken(
+                    KeysetCursor.decode(token.substring(0, separator)),
+                    KeysetCursor.decode(token.substring(separator + 1)));
+        }
+    }
+}
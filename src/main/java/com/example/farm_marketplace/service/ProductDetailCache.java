@@ -0,0 +1,52 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.ProductResponse;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.util.LruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Node-local, size-bounded cache of product details keyed by product id.
+ * Entries are dropped after any committed change to the product on this node.
+ * Changes committed on other nodes are not seen, so every entry also expires
+ * after product.cache.ttl-seconds; that is the longest a detail can be stale.
+ */
+@Component
+public class ProductDetailCache {
+    private final LruCache<Long, ProductResponse> cache;
+
+    public ProductDetailCache(
+            @Value("${product.cache.max-entries:10000}") int maxEntries,
+            @Value("${product.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.cache = new LruCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+    }
+
+    /**
+     * Cached product, or load it and cache the result when no change raced with the load
+     */
+    public ProductResponse get(Long productId, Supplier<ProductResponse> loader) {
+        return cache.getOrLoad(productId, id -> loader.get());
+    }
+
+    /**
+     * Cached products by id, loading all misses with one loader call
+     */
+    public Map<Long, ProductResponse> getAll(Collection<Long> productIds,
+                                             Function<Set<Long>, Map<Long, ProductResponse>> loader) {
+        return cache.getAllOrLoad(productIds, loader);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        event.getProductIds().forEach(cache::invalidate);
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.ProductImportResponse;
+import com.example.farm_marketplace.dto.ProductRequest;
+import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.exception.BadRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product import for farmers.
+ * The input is read line by line and upserted in fixed-size JDBC batches,
+ * so memory use does not grow with the size of the file.
+ * Products are matched to existing listings of the same farmer by name.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // A quoted CSV field may span lines, but a stray quote must not swallow the rest of the file
+    private static final int MAX_LINES_PER_RECORD = 20;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO products (farmer_id, name, description, price, unit, qty_available, " +
+            "active, version, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, true, 0, ?, ?)";
+    private static final String UPDATE_SQL =
+            "UPDATE products SET description = ?, price = ?, unit = ?, qty_available = ?, " +
+            "active = true, version = version + 1, updated_at = ? WHERE id = ?";
+    private static final String SELECT_BY_NAMES_SQL =
+            "SELECT id, name FROM products WHERE farmer_id = :farmerId AND name IN (:names)";
+    private static final String COUNT_INACTIVE_SQL =
+            "SELECT COUNT(*) FROM products WHERE id IN (:ids) AND active = false";
+
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserStatsService userStatsService;
+
+    public enum Format {
+        CSV, JSON_LINES;
+
+        public static Format fromContentType(String contentType) {
+            if (contentType != null) {
+                String type = contentType.toLowerCase(Locale.ROOT);
+                if (type.startsWith("text/csv")) {
+                    return CSV;
+                }
+                if (type.startsWith("application/x-ndjson") || type.startsWith("application/jsonl")) {
+                    return JSON_LINES;
+                }
+            }
+            throw new BadRequestException("Unsupported import format, use text/csv or application/x-ndjson");
+        }
+    }
+
+    /**
+     * Import products from CSV (with a header row) or JSON lines.
+     * Invalid rows are reported and skipped; valid rows are committed batch by batch.
+     */
+    public ProductImportResponse importProducts(String farmerEmail, InputStream input, Format format) {
+        User farmer = userService.findByEmail(farmerEmail);
+
+        if (!"FARMER".equals(farmer.getRole())) {
+            throw new RuntimeException("Only farmers can create products");
+        }
+
+        ImportResult result = new ImportResult();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            RecordReader records = new RecordReader(reader, format == Format.CSV);
+            RowParser parser = format == Format.CSV ? new CsvRowParser() : new JsonLineParser();
+            List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+            boolean expectHeader = format == Format.CSV;
+            String line;
+
+            while ((line = records.next()) != null) {
+                long lineNumber = records.line();
+                if (expectHeader) {
+                    ((CsvRowParser) parser).readHeader(line);
+                    expectHeader = false;
+                    continue;
+                }
+
+                result.totalRows++;
+                ProductRequest request;
+                try {
+                    request = parser.parse(line);
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    result.fail(lineNumber, "Malformed row: " + e.getMessage());
+                    continue;
+                }
+
+                String violations = validate(request);
+                if (violations != null) {
+                    result.fail(lineNumber, violations);
+                    continue;
+                }
+
+                batch.add(new ImportRow(lineNumber, request));
+                if (batch.size() == BATCH_SIZE) {
+                    flush(farmer.getId(), batch, result);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                flush(farmer.getId(), batch, result);
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Could not read import file: " + e.getMessage());
+        }
+
+        return ProductImportResponse.builder()
+                .totalRows(result.totalRows)
+                .created(result.created)
+                .updated(result.updated)
+                .failed(result.failed)
+                .errors(result.errors)
+                .errorsTruncated(result.failed > result.errors.size())
+                .build();
+    }
+
+    private String validate(ProductRequest request) {
+        Set<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Upsert one batch in its own transaction: update rows whose name already exists
+     * for this farmer, insert the rest. A failing batch is reported row by row.
+     */
+    private void flush(Long farmerId, List<ImportRow> batch, ImportResult result) {
+        // Later rows with the same name win, as if the file were applied row by row
+        Map<String, ImportRow> rowsByName = new LinkedHashMap<>();
+        for (ImportRow row : batch) {
+            rowsByName.put(row.request.getName(), row);
+        }
+
+        try {
+            int[] counts = transactionTemplate.execute(status -> upsert(farmerId, rowsByName));
+            // Rows superseded by a later row of the same name count as updates
+            result.updated += counts[0] + (batch.size() - rowsByName.size());
+            result.created += counts[1];
+        } catch (DataAccessException e) {
+            for (ImportRow row : rowsByName.values()) {
+                result.fail(row.line, "Could not save row: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private int[] upsert(Long farmerId, Map<String, ImportRow> rowsByName) {
+        Map<String, Long> existing = findIdsByName(farmerId, rowsByName.keySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (ImportRow row : rowsByName.values()) {
+            ProductRequest request = row.request;
+            Long id = existing.get(request.getName());
+            if (id != null) {
+                updates.add(new Object[]{request.getDescription(), request.getPrice(), unitOf(request),
+                        request.getQtyAvailable(), now, id});
+            } else {
+                inserts.add(new Object[]{farmerId, request.getName(), request.getDescription(),
+                        request.getPrice(), unitOf(request), request.getQtyAvailable(), now, now});
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            // Updates reactivate listings, which the farmer's active product count must follow
+            Long reactivated = namedJdbcTemplate.queryForObject(COUNT_INACTIVE_SQL,
+                    new MapSqlParameterSource("ids", existing.values()), Long.class);
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            userStatsService.recordProducts(farmerId, 0, reactivated);
+            eventPublisher.publishEvent(new ProductChangedEvent(
+                    farmerId, List.copyOf(existing.values()), ProductChangedEvent.ChangeType.UPDATED));
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+            userStatsService.recordProducts(farmerId, inserts.size(), inserts.size());
+            Set<String> insertedNames = new HashSet<>(rowsByName.keySet());
+            insertedNames.removeAll(existing.keySet());
+            eventPublisher.publishEvent(new ProductChangedEvent(
+                    farmerId, List.copyOf(findIdsByName(farmerId, insertedNames).values()),
+                    ProductChangedEvent.ChangeType.CREATED));
+        }
+        return new int[]{updates.size(), inserts.size()};
+    }
+
+    private Map<String, Long> findIdsByName(Long farmerId, Collection<String> names) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("farmerId", farmerId)
+                .addValue("names", names);
+        Map<String, Long> ids = new HashMap<>();
+        namedJdbcTemplate.query(SELECT_BY_NAMES_SQL, params, rs -> {
+            ids.merge(rs.getString("name"), rs.getLong("id"), Math::min);
+        });
+        return ids;
+    }
+
+    private static String unitOf(ProductRequest request) {
+        return request.getUnit() == null || request.getUnit().isBlank() ? "kg" : request.getUnit();
+    }
+
+    private record ImportRow(long line, ProductRequest request) {
+    }
+
+    private static class ImportResult {
+        private long totalRows;
+        private long created;
+        private long updated;
+        private long failed;
+        private final List<ProductImportResponse.RowError> errors = new ArrayList<>();
+
+        private void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(ProductImportResponse.RowError.builder()
+                        .line(line)
+                        .message(message)
+                        .build());
+            }
+        }
+    }
+
+    private interface RowParser {
+        ProductRequest parse(String line) throws JsonProcessingException;
+    }
+
+    private class JsonLineParser implements RowParser {
+        @Override
+        public ProductRequest parse(String line) throws JsonProcessingException {
+            ProductRequest request = objectMapper.readValue(line, ProductRequest.class);
+            if (request == null) {
+                throw new IllegalArgumentException("expected a JSON object, got null");
+            }
+            return request;
+        }
+    }
+
+    /**
+     * Reads the input one record at a time, skipping blank lines and a leading byte
+     * order mark. In CSV a record continues onto the next line while a quoted field
+     * is open, up to MAX_LINES_PER_RECORD lines.
+     */
+    static class RecordReader {
+        private final BufferedReader reader;
+        private final boolean csv;
+        private long lineNumber;
+        private long recordLine;
+
+        RecordReader(BufferedReader reader, boolean csv) {
+            this.reader = reader;
+            this.csv = csv;
+        }
+
+        /**
+         * The next record, or null at the end of the input
+         */
+        String next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                lineNumber++;
+                if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+            } while (line.isBlank());
+            recordLine = lineNumber;
+
+            if (!csv) {
+                return line;
+            }
+            StringBuilder record = new StringBuilder(line);
+            int lines = 1;
+            while (CsvRowParser.insideQuotes(record) && lines < MAX_LINES_PER_RECORD) {
+                String continuation = reader.readLine();
+                if (continuation == null) {
+                    break;
+                }
+                lineNumber++;
+                lines++;
+                record.append('\n').append(continuation);
+            }
+            return record.toString();
+        }
+
+        /**
+         * Line number where the last returned record starts
+         */
+        long line() {
+            return recordLine;
+        }
+    }
+
+    /**
+     * Parses one CSV record: comma separated, fields optionally quoted, with ""
+     * as an escaped quote inside quoted fields and line breaks kept inside them.
+     * Columns are matched by header name, so their order is free.
+     */
+    static class CsvRowParser implements RowParser {
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        void readHeader(String line) {
+            List<String> names = split(line);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "");
+                columns.put(name, i);
+            }
+            if (!columns.containsKey("name") || !columns.containsKey("price") || !columns.containsKey("qtyavailable")) {
+                throw new BadRequestException("CSV header must contain name, price and qtyAvailable columns");
+            }
+        }
+
+        @Override
+        public ProductRequest parse(String line) {
+            List<String> fields = split(line);
+            ProductRequest request = new ProductRequest();
+            request.setName(field(fields, "name"));
+            request.setDescription(field(fields, "description"));
+            request.setPrice(decimal(field(fields, "price")));
+            String unit = field(fields, "unit");
+            if (unit != null) {
+                request.setUnit(unit);
+            }
+            request.setQtyAvailable(decimal(field(fields, "qtyavailable")));
+            return request;
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static BigDecimal decimal(String value) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("'" + value + "' is not a number");
+            }
+        }
+
+        /**
+         * Whether a quoted field is still open at the end of the text; every quote,
+         * escaped ones included, toggles the state
+         */
+        static boolean insideQuotes(CharSequence text) {
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '"') {
+                    quoted = !quoted;
+                }
+            }
+            return quoted;
+        }
+
+        private static List<String> split(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("unterminated quoted field");
+            }
+            fields.add(current.toString());
+            return fields;
+        }
+    }
+}
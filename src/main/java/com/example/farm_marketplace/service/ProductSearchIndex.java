@@ -0,0 +1,350 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.ProductResponse;
+import com.example.farm_marketplace.entity.Product;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.repository.ProductRepository;
+import com.example.farm_marketplace.util.KeysetCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search index over the product catalog.
+ * Name and description words are indexed by prefix into bitmaps of document slots,
+ * and the farmer's state and district are kept as facet bitmaps, so filtered
+ * searches are answered without touching the database. Results are ordered newest
+ * first by (createdAt, id); products without a creation time sort after all others.
+ * Products are read from the database outside the lock, so copies can arrive out of
+ * order; a copy never replaces a newer one already indexed.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex {
+    private static final int MAX_PREFIX_LENGTH = 12;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    // Sort time of products without a creation time: older than any real product
+    private static final LocalDateTime UNDATED = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final Comparator<ProductResponse> NEWEST_FIRST = Comparator
+            .comparing(ProductSearchIndex::sortTime, Comparator.reverseOrder())
+            .thenComparing(ProductResponse::getId, Comparator.reverseOrder());
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate freshRead;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slotByProductId = new HashMap<>();
+    private final List<ProductResponse> docs = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private final Map<String, BitSet> stateFacets = new HashMap<>();
+    private final Map<String, BitSet> districtFacets = new HashMap<>();
+    private final BitSet available = new BitSet();
+    // Database reads are numbered in the order they start; a later read sees every earlier commit
+    private final AtomicLong readSequence = new AtomicLong();
+    private final Map<Long, Long> readAtByProductId = new HashMap<>();
+
+    public ProductSearchIndex(ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        // Stock is changed with JDBC, so the committing transaction's persistence context may still
+        // hold the old products; a new transaction reads them through a new EntityManager
+        this.freshRead = new TransactionTemplate(transactionManager);
+        this.freshRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.freshRead.setReadOnly(true);
+    }
+
+    /**
+     * Load the whole catalog into the index once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long afterId = 0L;
+        int indexed = 0;
+        List<Product> batch;
+        do {
+            long readAt = readSequence.incrementAndGet();
+            batch = productRepository.findBatchWithFarmer(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            lock.writeLock().lock();
+            try {
+                for (Product product : batch) {
+                    put(ProductService.mapToResponse(product), readAt);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).getId();
+                indexed += batch.size();
+            }
+        } while (batch.size() == REBUILD_BATCH_SIZE);
+        log.info("Product search index built with {} products", indexed);
+    }
+
+    /**
+     * Re-index products after the transaction that changed them commits
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.ChangeType.DELETED) {
+            lock.writeLock().lock();
+            try {
+                event.getProductIds().forEach(this::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        long readAt = readSequence.incrementAndGet();
+        List<ProductResponse> changed = freshRead.execute(status ->
+                productRepository.findAllWithFarmerByIdIn(event.getProductIds()).stream()
+                        .map(ProductService::mapToResponse)
+                        .toList());
+        Set<Long> missing = new HashSet<>(event.getProductIds());
+        lock.writeLock().lock();
+        try {
+            for (ProductResponse doc : changed) {
+                put(doc, readAt);
+                missing.remove(doc.getId());
+            }
+            for (Long productId : missing) {
+                if (readAtByProductId.getOrDefault(productId, 0L) < readAt) {
+                    remove(productId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Available products matching every word of the query (by prefix) and the
+     * optional state/district facets, newest first, strictly after the cursor.
+     * At most {@code limit} results are returned, picked with a heap of that size
+     * so a broad query does not sort every match.
+     */
+    public List<ProductResponse> search(String query, String state, String district,
+                                        KeysetCursor after, int limit) {
+        List<String> words = tokenize(query);
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) available.clone();
+            for (String word : words) {
+                BitSet posting = postings.get(prefixKey(word));
+                if (posting == null) {
+                    return List.of();
+                }
+                matches.and(posting);
+            }
+            if (!applyFacet(matches, stateFacets, state) || !applyFacet(matches, districtFacets, district)) {
+                return List.of();
+            }
+
+            // Oldest of the newest `limit` matches at the head, ready to be replaced
+            PriorityQueue<ProductResponse> newest = new PriorityQueue<>(limit + 1, NEWEST_FIRST.reversed());
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                ProductResponse doc = docs.get(slot);
+                if (!isAfter(doc, after)) {
+                    continue;
+                }
+                if (newest.size() == limit && NEWEST_FIRST.compare(doc, newest.peek()) >= 0) {
+                    continue;
+                }
+                if (matchesLongWords(doc, words)) {
+                    newest.add(doc);
+                    if (newest.size() > limit) {
+                        newest.poll();
+                    }
+                }
+            }
+            List<ProductResponse> results = new ArrayList<>(newest);
+            results.sort(NEWEST_FIRST);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean applyFacet(BitSet matches, Map<String, BitSet> facets, String value) {
+        String key = normalize(value);
+        if (key == null) {
+            return true;
+        }
+        BitSet facet = facets.get(key);
+        if (facet == null) {
+            return false;
+        }
+        matches.and(facet);
+        return true;
+    }
+
+    /**
+     * Index a copy of a product read at readAt, unless the indexed copy is newer: it has a
+     * higher version, or the same version (e.g. after a farmer profile change) and a later read.
+     * Callers hold the write lock.
+     */
+    void put(ProductResponse doc, long readAt) {
+        if (hasNewerCopy(doc, readAt)) {
+            return;
+        }
+        remove(doc.getId());
+
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = docs.size();
+            docs.add(doc);
+        } else {
+            slot = freeSlots.pop();
+            docs.set(slot, doc);
+        }
+        slotByProductId.put(doc.getId(), slot);
+
+        for (String token : indexTokens(doc)) {
+            postings.computeIfAbsent(token, k -> new BitSet()).set(slot);
+        }
+        setFacet(stateFacets, doc.getFarmerState(), slot, true);
+        setFacet(districtFacets, doc.getFarmerDistrict(), slot, true);
+
+        boolean inStock = doc.getQtyAvailable() != null && doc.getQtyAvailable().signum() > 0;
+        available.set(slot, Boolean.TRUE.equals(doc.getActive()) && inStock);
+        readAtByProductId.put(doc.getId(), readAt);
+    }
+
+    private boolean hasNewerCopy(ProductResponse doc, long readAt) {
+        Integer slot = slotByProductId.get(doc.getId());
+        if (slot == null) {
+            return false;
+        }
+        int byVersion = Long.compare(versionOf(docs.get(slot)), versionOf(doc));
+        return byVersion > 0 || (byVersion == 0 && readAtByProductId.get(doc.getId()) > readAt);
+    }
+
+    private static long versionOf(ProductResponse doc) {
+        return doc.getVersion() == null ? 0 : doc.getVersion();
+    }
+
+    private void remove(Long productId) {
+        Integer slot = slotByProductId.remove(productId);
+        if (slot == null) {
+            return;
+        }
+        readAtByProductId.remove(productId);
+        ProductResponse doc = docs.get(slot);
+        for (String token : indexTokens(doc)) {
+            BitSet posting = postings.get(token);
+            if (posting != null) {
+                posting.clear(slot);
+                if (posting.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+        setFacet(stateFacets, doc.getFarmerState(), slot, false);
+        setFacet(districtFacets, doc.getFarmerDistrict(), slot, false);
+        available.clear(slot);
+        docs.set(slot, null);
+        freeSlots.push(slot);
+    }
+
+    private void setFacet(Map<String, BitSet> facets, String value, int slot, boolean present) {
+        String key = normalize(value);
+        if (key == null) {
+            return;
+        }
+        if (present) {
+            facets.computeIfAbsent(key, k -> new BitSet()).set(slot);
+        } else {
+            BitSet facet = facets.get(key);
+            if (facet != null) {
+                facet.clear(slot);
+                if (facet.isEmpty()) {
+                    facets.remove(key);
+                }
+            }
+        }
+    }
+
+    private static Set<String> indexTokens(ProductResponse doc) {
+        Set<String> tokens = new HashSet<>();
+        for (String word : documentWords(doc)) {
+            for (int length = 1; length <= Math.min(word.length(), MAX_PREFIX_LENGTH); length++) {
+                tokens.add(word.substring(0, length));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Words longer than the indexed prefix length are verified against the document text
+     */
+    private static boolean matchesLongWords(ProductResponse doc, List<String> words) {
+        for (String word : words) {
+            if (word.length() > MAX_PREFIX_LENGTH
+                    && documentWords(doc).stream().noneMatch(w -> w.startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cursor positioned at a search result, for the page that follows it
+     */
+    public static KeysetCursor cursorAt(ProductResponse doc) {
+        return new KeysetCursor(sortTime(doc), doc.getId());
+    }
+
+    private static boolean isAfter(ProductResponse doc, KeysetCursor after) {
+        int cmp = sortTime(doc).compareTo(after.getTimestamp());
+        return cmp < 0 || (cmp == 0 && doc.getId() < after.getId());
+    }
+
+    private static LocalDateTime sortTime(ProductResponse doc) {
+        return doc.getCreatedAt() == null ? UNDATED : doc.getCreatedAt();
+    }
+
+    private static List<String> documentWords(ProductResponse doc) {
+        List<String> words = new ArrayList<>(tokenize(doc.getName()));
+        words.addAll(tokenize(doc.getDescription()));
+        return words;
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static String prefixKey(String word) {
+        return word.length() > MAX_PREFIX_LENGTH ? word.substring(0, MAX_PREFIX_LENGTH) : word;
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,22 +1,46 @@
 package com.example.farm_marketplace.service;
+import com.example.farm_marketplace.dto.CursorPage;
+import com.example.farm_marketplace.dto.ProductBatchResponse;
 import com.example.farm_marketplace.dto.ProductRequest;
 import com.example.farm_marketplace.dto.ProductResponse;
 import com.example.farm_marketplace.entity.Product;
+import com.example.farm_marketplace.entity.ProductTombstone;
 import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.exception.BadRequestException;
 import com.example.farm_marketplace.exception.ResourceNotFoundException;
 import com.example.farm_marketplace.repository.ProductRepository;
+import com.example.farm_marketplace.repository.ProductTombstoneRepository;
+import com.example.farm_marketplace.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import java.util.List;
+import org.springframework.web.multipart.MultipartFile;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class ProductService {
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+    static final String UPLOADS_PREFIX = "/uploads/";
+    static final int MAX_BATCH_IDS = 100;
+
     private final ProductRepository productRepository;
+    private final ProductTombstoneRepository tombstoneRepository;
     private final UserService userService;
+    private final ProductSearchIndex searchIndex;
+    private final ProductDetailCache detailCache;
+    private final FarmerProductCache farmerProductCache;
+    private final ImageStorageService imageStorageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserStatsService userStatsService;
 
     /**
      * Create a new product (Farmer only)
@@ -40,6 +64,8 @@ public class ProductService {
                 .build();
 
         product = productRepository.save(product);
+        userStatsService.recordProducts(farmer.getId(), 1, 1);
+        publishChange(product, ProductChangedEvent.ChangeType.CREATED);
         return mapToResponse(product);
     }
 
@@ -47,11 +73,11 @@ public class ProductService {
      * Get all products created by logged-in farmer
      */
     public List<ProductResponse> getFarmerProducts(String farmerEmail) {
-        User farmer = userService.findByEmail(farmerEmail);
-        return productRepository.findByFarmerId(farmer.getId())
+        Long farmerId = userService.findIdByEmail(farmerEmail);
+        return farmerProductCache.get(farmerId, id -> productRepository.findByFarmerId(id)
                 .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .map(ProductService::mapToResponse)
+                .collect(Collectors.toList()));
     }
 
     /**
@@ -63,27 +89,109 @@ public class ProductService {
 
         return productRepository.findByFarmerId(farmerId)
                 .stream()
-                .map(this::mapToResponse)
+                .map(ProductService::mapToResponse)
                 .collect(Collectors.toList());
     }
 
     /**
-     * Get all available products (active and in stock)
+     * Get one keyset page of available products, newest first
      */
-    public List<ProductResponse> getAllAvailableProducts() {
-        return productRepository.findAvailableProducts()
-                .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    public CursorPage<ProductResponse> getAvailableProductsPage(String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+
+        // Fetch one extra row to learn whether another page exists
+        List<Product> rows = productRepository.findAvailableProductsAfter(
+                position.getTimestamp(), position.getId(), PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Product> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Product last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return CursorPage.<ProductResponse>builder()
+                .items(page.stream().map(ProductService::mapToResponse).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .limit(pageSize)
+                .build();
+    }
+
+    /**
+     * Search available products by name/description and farmer location.
+     * Served from the in-memory search index, paged the same way as the catalog.
+     */
+    public CursorPage<ProductResponse> searchProducts(String search, String state, String district,
+                                                      String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        List<ProductResponse> rows = searchIndex.search(
+                search, state, district, KeysetCursor.decode(cursor), pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<ProductResponse> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            nextCursor = ProductSearchIndex.cursorAt(page.get(page.size() - 1)).encode();
+        }
+
+        return CursorPage.<ProductResponse>builder()
+                .items(page)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .limit(pageSize)
+                .build();
     }
 
     /**
      * Get product by ID (public access)
      */
     public ProductResponse getProductById(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-        return mapToResponse(product);
+        return detailCache.get(id, () -> productRepository.findWithFarmerById(id)
+                .map(ProductService::mapToResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found")));
+    }
+
+    /**
+     * Get several products by ID in request order, cached ones first and
+     * the rest with one query; unknown ids are reported as missing
+     */
+    public ProductBatchResponse getProductsByIds(Collection<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>();
+        for (Long id : ids == null ? List.<Long>of() : ids) {
+            if (id != null) {
+                requested.add(id);
+            }
+        }
+        if (requested.isEmpty()) {
+            throw new BadRequestException("At least one product id is required");
+        }
+        if (requested.size() > MAX_BATCH_IDS) {
+            throw new BadRequestException("At most " + MAX_BATCH_IDS + " product ids can be requested at once");
+        }
+
+        Map<Long, ProductResponse> found = detailCache.getAll(requested, missing ->
+                productRepository.findAllWithFarmerByIdIn(missing).stream()
+                        .collect(Collectors.toMap(Product::getId, ProductService::mapToResponse)));
+
+        List<ProductResponse> products = new ArrayList<>(requested.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            ProductResponse product = found.get(id);
+            if (product != null) {
+                products.add(product);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return ProductBatchResponse.builder()
+                .products(products)
+                .missingIds(missingIds)
+                .build();
     }
 
     /**
@@ -91,14 +199,13 @@ public class ProductService {
      */
     public ProductResponse getFarmerProductById(String farmerEmail, Long productId) {
         User farmer = userService.findByEmail(farmerEmail);
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        ProductResponse product = getProductById(productId);
 
-        if (!product.getFarmer().getId().equals(farmer.getId())) {
+        if (!product.getFarmerId().equals(farmer.getId())) {
             throw new RuntimeException("You can only view your own products");
         }
 
-        return mapToResponse(product);
+        return product;
     }
 
     /**
@@ -120,7 +227,31 @@ public class ProductService {
         product.setUnit(request.getUnit());
         product.setQtyAvailable(request.getQtyAvailable());
 
-        product = productRepository.save(product);
+        // Flush so the response carries the incremented version
+        product = productRepository.saveAndFlush(product);
+        publishChange(product, ProductChangedEvent.ChangeType.UPDATED);
+        return mapToResponse(product);
+    }
+
+    /**
+     * Upload a product image and point the product at it
+     */
+    @Transactional
+    public ProductResponse updateProductImage(String farmerEmail, Long productId, MultipartFile file) {
+        User farmer = userService.findByEmail(farmerEmail);
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+
+        if (!product.getFarmer().getId().equals(farmer.getId())) {
+            throw new RuntimeException("You can only update your own products");
+        }
+
+        String filename = imageStorageService.store(file);
+        imageDerivativeService.submit(filename);
+        product.setImageUrl(UPLOADS_PREFIX + filename);
+
+        product = productRepository.saveAndFlush(product);
+        publishChange(product, ProductChangedEvent.ChangeType.UPDATED);
         return mapToResponse(product);
     }
 
@@ -138,6 +269,13 @@ public class ProductService {
         }
 
         productRepository.delete(product);
+        tombstoneRepository.save(ProductTombstone.builder()
+                .productId(product.getId())
+                .farmerId(farmer.getId())
+                .deletedAt(LocalDateTime.now())
+                .build());
+        userStatsService.recordProducts(farmer.getId(), -1, Boolean.TRUE.equals(product.getActive()) ? -1 : 0);
+        publishChange(product, ProductChangedEvent.ChangeType.DELETED);
     }
 
     /**
@@ -148,10 +286,40 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
     }
 
+    /**
+     * Clamp a client supplied page size to [1, MAX_PAGE_SIZE]
+     */
+    static int resolvePageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    private void publishChange(Product product, ProductChangedEvent.ChangeType type) {
+        eventPublisher.publishEvent(new ProductChangedEvent(
+                product.getFarmer().getId(), List.of(product.getId()), type));
+    }
+
+    /**
+     * Resized image URLs by variant; each one serves the original until its derivative exists
+     */
+    static Map<String, String> derivativeUrls(String imageUrl) {
+        if (imageUrl == null || !imageUrl.startsWith(UPLOADS_PREFIX)) {
+            return null;
+        }
+        String filename = imageUrl.substring(UPLOADS_PREFIX.length());
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (ImageDerivativeService.Variant variant : ImageDerivativeService.Variant.values()) {
+            urls.put(variant.key(), UPLOADS_PREFIX + "derivatives/" + variant.key() + "/" + filename);
+        }
+        return urls;
+    }
+
     /**
      * Map Product entity to ProductResponse DTO
      */
-    private ProductResponse mapToResponse(Product product) {
+    static ProductResponse mapToResponse(Product product) {
         User farmer = product.getFarmer();
         return ProductResponse.builder()
                 .id(product.getId())
@@ -166,8 +334,11 @@ public class ProductService {
                 .unit(product.getUnit())
                 .qtyAvailable(product.getQtyAvailable())
                 .imageUrl(product.getImageUrl())
+                .imageDerivatives(derivativeUrls(product.getImageUrl()))
                 .active(product.getActive())
+                .version(product.getVersion())
                 .createdAt(product.getCreatedAt())
+                .updatedAt(product.getUpdatedAt())
                 .build();
     }
-}
\ No newline at end of file
+}
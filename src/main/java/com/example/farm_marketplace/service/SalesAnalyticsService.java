@@ -0,0 +1,276 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.SalesAnalyticsResponse;
+import com.example.farm_marketplace.exception.BadRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Revenue per day, week or month per product, served from the sales_rollups table.
+ * Completing an order adds its items to today's DAY rows in the same transaction.
+ * A background compaction folds finished days into WEEK and MONTH rows and drops
+ * DAY and WEEK rows past their retention; queries add the DAY rows that are not
+ * folded yet, so results are exact without waiting for compaction.
+ */
+@Slf4j
+@Service
+public class SalesAnalyticsService {
+    private static final int STATE_ID = 1;
+    // Days still being written to (including a transaction that began before midnight) are never folded
+    private static final int COMPACTION_LAG_DAYS = 2;
+
+    private static final String RECORD_COMPLETED_SQL =
+            "INSERT INTO sales_rollups (farmer_id, granularity, bucket_start, product_id, quantity, revenue, order_count) " +
+            "SELECT o.farmer_id, 'DAY', CURRENT_DATE, oi.product_id, SUM(oi.quantity), " +
+            "SUM(oi.quantity * oi.price_each), COUNT(DISTINCT o.id) " +
+            "FROM orders o JOIN order_items oi ON oi.order_id = o.id WHERE o.id IN (:ids) " +
+            "GROUP BY o.farmer_id, oi.product_id ORDER BY o.farmer_id, oi.product_id " +
+            "ON CONFLICT (farmer_id, granularity, bucket_start, product_id) DO UPDATE SET " +
+            "quantity = sales_rollups.quantity + EXCLUDED.quantity, " +
+            "revenue = sales_rollups.revenue + EXCLUDED.revenue, " +
+            "order_count = sales_rollups.order_count + EXCLUDED.order_count";
+    private static final String FOLD_SQL =
+            "INSERT INTO sales_rollups (farmer_id, granularity, bucket_start, product_id, quantity, revenue, order_count) " +
+            "SELECT farmer_id, '%1$s', CAST(date_trunc('%2$s', bucket_start) AS DATE), product_id, " +
+            "SUM(quantity), SUM(revenue), SUM(order_count) FROM sales_rollups " +
+            "WHERE granularity = 'DAY' AND bucket_start > ? AND bucket_start <= ? " +
+            "GROUP BY farmer_id, CAST(date_trunc('%2$s', bucket_start) AS DATE), product_id " +
+            "ORDER BY 1, 3, 4 " +
+            "ON CONFLICT (farmer_id, granularity, bucket_start, product_id) DO UPDATE SET " +
+            "quantity = sales_rollups.quantity + EXCLUDED.quantity, " +
+            "revenue = sales_rollups.revenue + EXCLUDED.revenue, " +
+            "order_count = sales_rollups.order_count + EXCLUDED.order_count";
+    private static final String LOCK_STATE_SQL =
+            "SELECT compacted_through FROM sales_rollup_state WHERE id = ? FOR UPDATE";
+    private static final String SAVE_STATE_SQL =
+            "UPDATE sales_rollup_state SET compacted_through = ? WHERE id = ?";
+    private static final String PURGE_SQL =
+            "DELETE FROM sales_rollups WHERE granularity = ? AND bucket_start < ? AND bucket_start <= ?";
+    private static final String BACKFILL_SQL =
+            "INSERT INTO sales_rollups (farmer_id, granularity, bucket_start, product_id, quantity, revenue, order_count) " +
+            "SELECT o.farmer_id, 'DAY', CAST(o.updated_at AS DATE), oi.product_id, SUM(oi.quantity), " +
+            "SUM(oi.quantity * oi.price_each), COUNT(DISTINCT o.id) " +
+            "FROM orders o JOIN order_items oi ON oi.order_id = o.id WHERE o.status = 'COMPLETED' " +
+            "GROUP BY o.farmer_id, CAST(o.updated_at AS DATE), oi.product_id";
+    private static final String DAY_QUERY_SQL =
+            "SELECT r.bucket_start AS bucket, r.product_id, p.name AS product_name, " +
+            "r.quantity, r.revenue, r.order_count FROM sales_rollups r LEFT JOIN products p ON p.id = r.product_id " +
+            "WHERE r.farmer_id = :farmerId AND r.granularity = 'DAY' " +
+            "AND r.bucket_start >= :from AND r.bucket_start < :end " +
+            "AND (:productId = 0 OR r.product_id = :productId) ORDER BY bucket, r.product_id";
+    // Folded rows of the granularity plus the DAY rows not folded yet, read in one statement
+    private static final String BUCKET_QUERY_SQL =
+            "SELECT r.bucket, r.product_id, p.name AS product_name, SUM(r.quantity) AS quantity, " +
+            "SUM(r.revenue) AS revenue, SUM(r.order_count) AS order_count FROM (" +
+            "SELECT bucket_start AS bucket, product_id, quantity, revenue, order_count FROM sales_rollups " +
+            "WHERE farmer_id = :farmerId AND granularity = '%1$s' AND bucket_start >= :from AND bucket_start < :end " +
+            "UNION ALL " +
+            "SELECT CAST(date_trunc('%2$s', bucket_start) AS DATE), product_id, quantity, revenue, order_count " +
+            "FROM sales_rollups WHERE farmer_id = :farmerId AND granularity = 'DAY' " +
+            "AND bucket_start >= :from AND bucket_start < :end AND bucket_start > COALESCE(" +
+            "(SELECT compacted_through FROM sales_rollup_state WHERE id = " + STATE_ID + "), DATE '1970-01-01')" +
+            ") r LEFT JOIN products p ON p.id = r.product_id " +
+            "WHERE (:productId = 0 OR r.product_id = :productId) " +
+            "GROUP BY r.bucket, r.product_id, p.name ORDER BY r.bucket, r.product_id";
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        public static Granularity fromParam(String value) {
+            if (value == null || value.isBlank()) {
+                return DAY;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Granularity must be day, week or month");
+            }
+        }
+
+        LocalDate bucketOf(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate next(LocalDate bucket) {
+            return switch (this) {
+                case DAY -> bucket.plusDays(1);
+                case WEEK -> bucket.plusWeeks(1);
+                case MONTH -> bucket.plusMonths(1);
+            };
+        }
+
+        String unit() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int dayRetentionDays;
+    private final int weekRetentionWeeks;
+
+    public SalesAnalyticsService(
+            UserService userService,
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${analytics.rollups.day-retention-days:400}") int dayRetentionDays,
+            @Value("${analytics.rollups.week-retention-weeks:260}") int weekRetentionWeeks) {
+        this.userService = userService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.dayRetentionDays = dayRetentionDays;
+        this.weekRetentionWeeks = weekRetentionWeeks;
+    }
+
+    /**
+     * Add the items of orders that just became COMPLETED to today's rollups
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCompleted(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.update(RECORD_COMPLETED_SQL, new MapSqlParameterSource("ids", orderIds));
+    }
+
+    /**
+     * Sales per bucket and product for [from, to], widened to whole buckets.
+     * A productId of null covers all of the farmer's products.
+     */
+    public SalesAnalyticsResponse getSales(String farmerEmail, Granularity granularity, LocalDate from,
+                                           LocalDate to, Long productId) {
+        if (from.isAfter(to)) {
+            throw new BadRequestException("from must not be after to");
+        }
+        LocalDate start = granularity.bucketOf(from);
+        LocalDate end = granularity.next(granularity.bucketOf(to));
+        checkRetention(granularity, start);
+
+        Long farmerId = userService.findIdByEmail(farmerEmail);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("farmerId", farmerId)
+                .addValue("from", Date.valueOf(start))
+                .addValue("end", Date.valueOf(end))
+                .addValue("productId", productId == null ? 0L : productId);
+        String sql = granularity == Granularity.DAY
+                ? DAY_QUERY_SQL
+                : String.format(BUCKET_QUERY_SQL, granularity.name(), granularity.unit());
+
+        List<SalesAnalyticsResponse.Point> points = namedJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                SalesAnalyticsResponse.Point.builder()
+                        .bucketStart(rs.getDate("bucket").toLocalDate())
+                        .productId(rs.getLong("product_id"))
+                        .productName(rs.getString("product_name"))
+                        .quantity(rs.getBigDecimal("quantity"))
+                        .revenue(rs.getBigDecimal("revenue"))
+                        .orders(rs.getLong("order_count"))
+                        .build());
+
+        return SalesAnalyticsResponse.builder()
+                .granularity(granularity.name())
+                .from(start)
+                .to(end.minusDays(1))
+                .totalRevenue(points.stream()
+                        .map(SalesAnalyticsResponse.Point::getRevenue)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add))
+                .points(points)
+                .build();
+    }
+
+    private void checkRetention(Granularity granularity, LocalDate start) {
+        LocalDate today = LocalDate.now();
+        if (granularity == Granularity.DAY && start.isBefore(today.minusDays(dayRetentionDays))) {
+            throw new BadRequestException("Daily sales are kept for " + dayRetentionDays +
+                    " days, use week or month for older ranges");
+        }
+        if (granularity == Granularity.WEEK && start.isBefore(today.minusWeeks(weekRetentionWeeks))) {
+            throw new BadRequestException("Weekly sales are kept for " + weekRetentionWeeks +
+                    " weeks, use month for older ranges");
+        }
+    }
+
+    /**
+     * Build the rollups from existing completed orders the first time the table is used,
+     * bucketing each order by its last update
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfMissing() {
+        boolean backfilled = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            // Blocks writers for the rebuild; rows they added before are recounted from the orders
+            jdbcTemplate.execute("LOCK TABLE sales_rollups IN SHARE ROW EXCLUSIVE MODE");
+            Integer states = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM sales_rollup_state WHERE id = ?", Integer.class, STATE_ID);
+            if (states != null && states > 0) {
+                return false;
+            }
+            jdbcTemplate.update("DELETE FROM sales_rollups");
+            jdbcTemplate.update(BACKFILL_SQL);
+            jdbcTemplate.update("INSERT INTO sales_rollup_state (id, compacted_through) VALUES (?, ?)",
+                    STATE_ID, Date.valueOf(LocalDate.of(1970, 1, 1)));
+            return true;
+        }));
+        if (backfilled) {
+            log.info("Sales rollups built from existing completed orders");
+            compact();
+        }
+    }
+
+    /**
+     * Fold finished days into WEEK and MONTH rows, then drop rows past their retention
+     */
+    @Scheduled(fixedDelayString = "${analytics.rollups.compaction-interval-ms:3600000}")
+    public void compact() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Date> state = jdbcTemplate.queryForList(LOCK_STATE_SQL, Date.class, STATE_ID);
+            if (state.isEmpty()) {
+                // Not backfilled yet
+                return;
+            }
+            LocalDate compactedThrough = state.get(0).toLocalDate();
+            LocalDate today = jdbcTemplate.queryForObject("SELECT CURRENT_DATE", Date.class).toLocalDate();
+            LocalDate through = today.minusDays(COMPACTION_LAG_DAYS);
+            if (!through.isAfter(compactedThrough)) {
+                return;
+            }
+
+            for (Granularity granularity : List.of(Granularity.WEEK, Granularity.MONTH)) {
+                jdbcTemplate.update(String.format(FOLD_SQL, granularity.name(), granularity.unit()),
+                        Date.valueOf(compactedThrough), Date.valueOf(through));
+            }
+            jdbcTemplate.update(SAVE_STATE_SQL, Date.valueOf(through), STATE_ID);
+
+            // Only rows already folded into coarser buckets may go
+            int days = jdbcTemplate.update(PURGE_SQL, Granularity.DAY.name(),
+                    Date.valueOf(today.minusDays(dayRetentionDays)), Date.valueOf(through));
+            int weeks = jdbcTemplate.update(PURGE_SQL, Granularity.WEEK.name(),
+                    Date.valueOf(today.minusWeeks(weekRetentionWeeks)), Date.valueOf(through));
+            log.info("Sales rollups compacted through {} ({} daily and {} weekly rows purged)",
+                    through, days, weeks);
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.entity.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Set-based stock changes. Products managed by the {@link InventoryLedger} go
+ * through the ledger; for all others each change is one conditional UPDATE per
+ * product, sent to the database as a single JDBC batch. The stock check happens
+ * in the same statement as the decrement, so no read-then-write race is possible.
+ * Rows are always updated in product id order to keep lock order consistent.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(propagation = Propagation.MANDATORY)
+public class StockService {
+    private static final String DEDUCT_SQL =
+            "UPDATE products SET qty_available = qty_available - ?, version = version + 1, updated_at = ? " +
+            "WHERE id = ? AND active = true AND qty_available >= ?";
+    private static final String RESTORE_SQL =
+            "UPDATE products SET qty_available = qty_available + ?, version = version + 1, updated_at = ? " +
+            "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryLedger inventoryLedger;
+
+    /**
+     * Deduct quantities by product id. Returns the ids that could not be deducted
+     * (missing, inactive or not enough stock); the caller must then fail the transaction.
+     */
+    public List<Long> deduct(Map<Long, BigDecimal> quantities) {
+        Map<Long, BigDecimal> direct = new LinkedHashMap<>(quantities);
+        Map<Long, BigDecimal> ledger = inventoryLedger.takeManaged(direct);
+
+        List<Long> insufficient = inventoryLedger.reserve(ledger);
+        if (!insufficient.isEmpty()) {
+            return insufficient;
+        }
+        return deductRows(direct);
+    }
+
+    /**
+     * Give quantities back to their products
+     */
+    public void restore(Map<Long, BigDecimal> quantities) {
+        Map<Long, BigDecimal> direct = new LinkedHashMap<>(quantities);
+        inventoryLedger.restore(inventoryLedger.takeManaged(direct));
+        restoreRows(direct);
+    }
+
+    /**
+     * Quantity a product has left, as seen by whichever side keeps its stock
+     */
+    public BigDecimal available(Product product) {
+        return inventoryLedger.manages(product.getId())
+                ? inventoryLedger.available(product.getId())
+                : product.getQtyAvailable();
+    }
+
+    private List<Long> deductRows(Map<Long, BigDecimal> quantities) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BigDecimal> ordered = new TreeMap<>(quantities);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> args = new ArrayList<>(ordered.size());
+        ordered.forEach((productId, quantity) -> args.add(new Object[]{quantity, now, productId, quantity}));
+        int[] counts = jdbcTemplate.batchUpdate(DEDUCT_SQL, args);
+
+        List<Long> failed = new ArrayList<>();
+        int i = 0;
+        for (Long productId : ordered.keySet()) {
+            if (counts[i++] == 0) {
+                failed.add(productId);
+            }
+        }
+        return failed;
+    }
+
+    private void restoreRows(Map<Long, BigDecimal> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, BigDecimal> ordered = new TreeMap<>(quantities);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> args = new ArrayList<>(ordered.size());
+        ordered.forEach((productId, quantity) -> args.add(new Object[]{quantity, now, productId}));
+        jdbcTemplate.batchUpdate(RESTORE_SQL, args);
+    }
+}
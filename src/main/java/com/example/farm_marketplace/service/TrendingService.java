@@ -0,0 +1,183 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.event.OrderPlacedEvent;
+import com.example.farm_marketplace.util.TopKSketch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trending products per buyer district and per state, by recently placed orders.
+ * Each region has a fixed-size {@link TopKSketch} with time decay, fed after an
+ * order commits, so reads never touch the database. Sketches are written to a
+ * snapshot file periodically and on shutdown, and read back on start.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Map<String, TopKSketch> sketches = new ConcurrentHashMap<>();
+    private final int depth;
+    private final int width;
+    private final int topK;
+    private final long halfLifeMillis;
+    private final int maxRegions;
+    private final Path snapshotPath;
+
+    public TrendingService(
+            @Value("${trending.depth:4}") int depth,
+            @Value("${trending.width:1024}") int width,
+            @Value("${trending.top-k:50}") int topK,
+            @Value("${trending.half-life-hours:24}") long halfLifeHours,
+            @Value("${trending.max-regions:5000}") int maxRegions,
+            @Value("${trending.snapshot-path:./data/trending.snapshot}") String snapshotPath) {
+        this.depth = depth;
+        this.width = width;
+        this.topK = topK;
+        this.halfLifeMillis = Duration.ofHours(halfLifeHours).toMillis();
+        this.maxRegions = maxRegions;
+        this.snapshotPath = Paths.get(snapshotPath).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Count each ordered product once for the buyer's district and once for their state
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (isBlank(event.getBuyerState())) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String region : List.of(regionKey(event.getBuyerState(), null),
+                regionKey(event.getBuyerState(), event.getBuyerDistrict()))) {
+            TopKSketch sketch = sketchFor(region, now);
+            if (sketch == null) {
+                continue;
+            }
+            for (Long productId : event.getProductIds()) {
+                sketch.add(productId, 1.0, now);
+            }
+        }
+    }
+
+    /**
+     * Trending product ids for a district, falling back to its state when the district has none yet
+     */
+    public List<Long> trendingProductIds(String state, String district, int limit) {
+        if (isBlank(state)) {
+            return List.of();
+        }
+        int size = Math.max(1, Math.min(limit, topK));
+        TopKSketch sketch = isBlank(district) ? null : sketches.get(regionKey(state, district));
+        if (sketch == null || sketch.isEmpty()) {
+            sketch = sketches.get(regionKey(state, null));
+        }
+        return sketch == null ? List.of() : sketch.top(size);
+    }
+
+    private TopKSketch sketchFor(String region, long now) {
+        if (region == null) {
+            return null;
+        }
+        TopKSketch sketch = sketches.get(region);
+        if (sketch != null) {
+            return sketch;
+        }
+        if (sketches.size() >= maxRegions) {
+            return null;
+        }
+        return sketches.computeIfAbsent(region, key -> new TopKSketch(depth, width, topK, halfLifeMillis, now));
+    }
+
+    @PostConstruct
+    void loadSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                return;
+            }
+            int regions = in.readInt();
+            for (int i = 0; i < regions; i++) {
+                String region = in.readUTF();
+                TopKSketch sketch = TopKSketch.readFrom(in, depth, width, topK, halfLifeMillis);
+                if (sketch != null) {
+                    sketches.put(region, sketch);
+                }
+            }
+            log.info("Loaded trending sketches for {} regions", sketches.size());
+        } catch (IOException e) {
+            log.warn("Could not read trending snapshot {}, starting empty", snapshotPath, e);
+            sketches.clear();
+        }
+    }
+
+    /**
+     * Write all sketches to a temp file and move it over the previous snapshot
+     */
+    @Scheduled(fixedDelayString = "${trending.snapshot-interval-ms:300000}")
+    @PreDestroy
+    public void writeSnapshot() {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Path dir = snapshotPath.getParent();
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, "trending-", ".tmp");
+            Map<String, TopKSketch> current = Map.copyOf(sketches);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(current.size());
+                for (Map.Entry<String, TopKSketch> entry : current.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().writeTo(out);
+                }
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write trending snapshot {}", snapshotPath, e);
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ignored) {
+                // Best effort cleanup of a temp file
+            }
+        }
+    }
+
+    /**
+     * "state" or "state/district", case and surrounding space insensitive; null without a district
+     * when one was asked for
+     */
+    private static String regionKey(String state, String district) {
+        String key = state.trim().toLowerCase(Locale.ROOT);
+        if (district == null) {
+            return key;
+        }
+        return isBlank(district) ? null : key + "/" + district.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
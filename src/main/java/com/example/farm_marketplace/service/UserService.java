@@ -2,17 +2,29 @@ package com.example.farm_marketplace.service;
 
 import com.example.farm_marketplace.dto.UserResponse;
 import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.event.UserChangedEvent;
 import com.example.farm_marketplace.exception.ResourceNotFoundException;
+import com.example.farm_marketplace.repository.ProductRepository;
 import com.example.farm_marketplace.repository.UserRepository;
+import com.example.farm_marketplace.util.LruCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class UserService {
     private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Ids by email; a user's entries are dropped once a change to the user commits
+    private final LruCache<String, Long> idsByEmail = new LruCache<>(10_000);
 
     /**
      * Find user by email
@@ -22,6 +34,14 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with email: " + email));
     }
 
+    /**
+     * Find a user's id by email without loading the user
+     */
+    public Long findIdByEmail(String email) {
+        return idsByEmail.getOrLoad(email, key -> userRepository.findIdByEmail(key)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with email: " + key)));
+    }
+
     /**
      * Find user by ID
      */
@@ -72,9 +92,27 @@ public class UserService {
         }
 
         user = userRepository.save(user);
+
+        // Product listings embed the farmer's name, phone and location
+        if ("FARMER".equals(user.getRole())) {
+            eventPublisher.publishEvent(new ProductChangedEvent(
+                    user.getId(),
+                    productRepository.findIdsByFarmerId(user.getId()),
+                    ProductChangedEvent.ChangeType.UPDATED));
+        }
+
         return mapToResponse(user);
     }
 
+    /**
+     * A changed email or deleted user must not keep resolving to the old id
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void onUserChanged(UserChangedEvent event) {
+        idsByEmail.invalidateValue(event.getUserId());
+    }
+
     /**
      * Check if email exists
      */
@@ -97,4 +135,4 @@ public class UserService {
                 .phone(user.getPhone())
                 .build();
     }
-}
\ No newline at end of file
+}
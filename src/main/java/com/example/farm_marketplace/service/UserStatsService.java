@@ -0,0 +1,302 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.entity.Order;
+import com.example.farm_marketplace.entity.UserStats;
+import com.example.farm_marketplace.repository.UserStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user dashboard counters in the user_stats table.
+ * Order and product changes add their deltas to the affected rows inside the
+ * transaction that makes the change, so the stats endpoints read one row.
+ * Rows are updated in user id order to keep lock order consistent.
+ * A scheduled job recomputes every row from orders and products and repairs
+ * any drift; it also fills the table on first start.
+ */
+@Slf4j
+@Service
+public class UserStatsService {
+    private static final Order.OrderStatus[] STATUSES = Order.OrderStatus.values();
+    private static final String COUNT_COLUMNS = Arrays.stream(STATUSES)
+            .map(UserStatsService::countColumn)
+            .collect(Collectors.joining(", "));
+
+    private static final String ADD_SQL =
+            "INSERT INTO user_stats (user_id, " + COUNT_COLUMNS + ", completed_amount, open_amount, " +
+            "total_products, active_products, updated_at) VALUES (?, " + "?, ".repeat(STATUSES.length) +
+            "?, ?, ?, ?, ?) ON CONFLICT (user_id) DO UPDATE SET " +
+            Arrays.stream(STATUSES).map(UserStatsService::countColumn)
+                    .map(column -> column + " = user_stats." + column + " + EXCLUDED." + column + ", ")
+                    .collect(Collectors.joining()) +
+            "completed_amount = user_stats.completed_amount + EXCLUDED.completed_amount, " +
+            "open_amount = user_stats.open_amount + EXCLUDED.open_amount, " +
+            "total_products = user_stats.total_products + EXCLUDED.total_products, " +
+            "active_products = user_stats.active_products + EXCLUDED.active_products, " +
+            "updated_at = EXCLUDED.updated_at";
+    private static final String SET_SQL =
+            "UPDATE user_stats SET " +
+            Arrays.stream(STATUSES).map(status -> countColumn(status) + " = ?, ").collect(Collectors.joining()) +
+            "completed_amount = ?, open_amount = ?, total_products = ?, active_products = ?, updated_at = ? " +
+            "WHERE user_id = ?";
+    private static final String NEXT_USERS_SQL =
+            "SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String LOCK_STORED_SQL =
+            "SELECT * FROM user_stats WHERE user_id IN (:ids) ORDER BY user_id FOR UPDATE";
+    private static final String ORDER_TOTALS_SQL =
+            "SELECT user_id, status, COUNT(*) AS orders, SUM(total_amount) AS amount FROM (" +
+            "SELECT buyer_id AS user_id, status, total_amount FROM orders WHERE buyer_id IN (:ids) " +
+            "UNION ALL " +
+            "SELECT farmer_id AS user_id, status, total_amount FROM orders WHERE farmer_id IN (:ids)" +
+            ") o GROUP BY user_id, status";
+    private static final String PRODUCT_TOTALS_SQL =
+            "SELECT farmer_id, COUNT(*) AS total, COUNT(*) FILTER (WHERE active) AS active " +
+            "FROM products WHERE farmer_id IN (:ids) GROUP BY farmer_id";
+
+    private final UserStatsRepository userStatsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int reconcileBatchSize;
+
+    public UserStatsService(
+            UserStatsRepository userStatsRepository,
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${stats.reconcile.batch-size:500}") int reconcileBatchSize) {
+        this.userStatsRepository = userStatsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.reconcileBatchSize = reconcileBatchSize;
+    }
+
+    /**
+     * One order moving between statuses; from is null for a newly placed order
+     */
+    public record OrderChange(Long buyerId, Long farmerId, BigDecimal amount,
+                              Order.OrderStatus from, Order.OrderStatus to) {
+
+        public static OrderChange of(Order order, Order.OrderStatus from, Order.OrderStatus to) {
+            return new OrderChange(order.getBuyer().getId(), order.getFarmer().getId(),
+                    order.getTotalAmount(), from, to);
+        }
+    }
+
+    /**
+     * Stored counters of a user; all zero when nothing was recorded yet
+     */
+    public UserStats get(Long userId) {
+        return userStatsRepository.findById(userId)
+                .orElseGet(() -> UserStats.builder()
+                        .userId(userId)
+                        .completedAmount(BigDecimal.ZERO)
+                        .openAmount(BigDecimal.ZERO)
+                        .build());
+    }
+
+    /**
+     * Add the effect of order changes to the buyer's and the farmer's counters
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOrders(Collection<OrderChange> changes) {
+        Map<Long, Totals> deltas = new TreeMap<>();
+        for (OrderChange change : changes) {
+            for (Long userId : List.of(change.buyerId(), change.farmerId())) {
+                Totals delta = deltas.computeIfAbsent(userId, id -> new Totals());
+                if (change.from() != null) {
+                    delta.addOrders(change.from(), -1, change.amount().negate());
+                }
+                delta.addOrders(change.to(), 1, change.amount());
+            }
+        }
+        add(deltas);
+    }
+
+    /**
+     * Add product count changes to a farmer's counters
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordProducts(Long farmerId, long totalDelta, long activeDelta) {
+        if (totalDelta == 0 && activeDelta == 0) {
+            return;
+        }
+        Totals delta = new Totals();
+        delta.totalProducts = totalDelta;
+        delta.activeProducts = activeDelta;
+        add(Map.of(farmerId, delta));
+    }
+
+    private void add(Map<Long, Totals> deltas) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((userId, delta) -> {
+            List<Object> row = new ArrayList<>();
+            row.add(userId);
+            row.addAll(delta.values());
+            row.add(now);
+            rows.add(row.toArray());
+        });
+        jdbcTemplate.batchUpdate(ADD_SQL, rows);
+    }
+
+    /**
+     * Fill the table on the first start after it was introduced
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (userStatsRepository.count() == 0) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Recompute every user's counters from orders and products, batch by batch,
+     * and overwrite the rows that drifted
+     */
+    @Scheduled(cron = "${stats.reconcile.cron:0 30 3 * * *}")
+    public void reconcile() {
+        long lastId = 0;
+        int users = 0;
+        int repaired = 0;
+        List<Long> ids;
+        do {
+            ids = jdbcTemplate.queryForList(NEXT_USERS_SQL, Long.class, lastId, reconcileBatchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Long> batch = ids;
+            repaired += transactionTemplate.execute(status -> reconcileBatch(batch));
+            users += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        } while (ids.size() == reconcileBatchSize);
+
+        if (repaired > 0) {
+            log.warn("User stats reconciliation repaired {} of {} users", repaired, users);
+        } else {
+            log.info("User stats reconciliation checked {} users, no drift", users);
+        }
+    }
+
+    /**
+     * Lock the stored rows first: writers add their deltas after changing orders, so
+     * every change is either visible to the recount or applied on top of the repaired row
+     */
+    private int reconcileBatch(List<Long> userIds) {
+        Map<Long, Totals> zeros = new TreeMap<>();
+        userIds.forEach(id -> zeros.put(id, new Totals()));
+        add(zeros);
+
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", userIds);
+        Map<Long, Totals> stored = new HashMap<>();
+        namedJdbcTemplate.query(LOCK_STORED_SQL, params, rs -> {
+            stored.put(rs.getLong("user_id"), Totals.read(rs));
+        });
+
+        Map<Long, Totals> actual = new TreeMap<>();
+        userIds.forEach(id -> actual.put(id, new Totals()));
+        namedJdbcTemplate.query(ORDER_TOTALS_SQL, params, rs -> {
+            Order.OrderStatus status = Order.OrderStatus.valueOf(rs.getString("status"));
+            actual.get(rs.getLong("user_id")).addOrders(status, rs.getLong("orders"), rs.getBigDecimal("amount"));
+        });
+        namedJdbcTemplate.query(PRODUCT_TOTALS_SQL, params, rs -> {
+            Totals totals = actual.get(rs.getLong("farmer_id"));
+            totals.totalProducts = rs.getLong("total");
+            totals.activeProducts = rs.getLong("active");
+        });
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> repairs = new ArrayList<>();
+        actual.forEach((userId, totals) -> {
+            if (!totals.sameAs(stored.get(userId))) {
+                List<Object> row = new ArrayList<>(totals.values());
+                row.add(now);
+                row.add(userId);
+                repairs.add(row.toArray());
+            }
+        });
+        if (!repairs.isEmpty()) {
+            jdbcTemplate.batchUpdate(SET_SQL, repairs);
+        }
+        return repairs.size();
+    }
+
+    private static String countColumn(Order.OrderStatus status) {
+        return status.name().toLowerCase(Locale.ROOT) + "_orders";
+    }
+
+    /**
+     * Counter values of one row, or the change to apply to it
+     */
+    private static class Totals {
+        private final long[] orders = new long[STATUSES.length];
+        private BigDecimal completedAmount = BigDecimal.ZERO;
+        private BigDecimal openAmount = BigDecimal.ZERO;
+        private long totalProducts;
+        private long activeProducts;
+
+        void addOrders(Order.OrderStatus status, long count, BigDecimal amount) {
+            orders[status.ordinal()] += count;
+            if (status == Order.OrderStatus.COMPLETED) {
+                completedAmount = completedAmount.add(amount);
+            } else if (status == Order.OrderStatus.PENDING || status == Order.OrderStatus.CONFIRMED) {
+                openAmount = openAmount.add(amount);
+            }
+        }
+
+        /**
+         * Values in column order: order counts, amounts, product counts
+         */
+        List<Object> values() {
+            List<Object> values = new ArrayList<>(STATUSES.length + 4);
+            for (long count : orders) {
+                values.add(count);
+            }
+            values.add(completedAmount);
+            values.add(openAmount);
+            values.add(totalProducts);
+            values.add(activeProducts);
+            return values;
+        }
+
+        boolean sameAs(Totals other) {
+            return other != null
+                    && Arrays.equals(orders, other.orders)
+                    && completedAmount.compareTo(other.completedAmount) == 0
+                    && openAmount.compareTo(other.openAmount) == 0
+                    && totalProducts == other.totalProducts
+                    && activeProducts == other.activeProducts;
+        }
+
+        static Totals read(ResultSet rs) throws SQLException {
+            Totals totals = new Totals();
+            for (Order.OrderStatus status : STATUSES) {
+                totals.orders[status.ordinal()] = rs.getLong(countColumn(status));
+            }
+            totals.completedAmount = rs.getBigDecimal("completed_amount");
+            totals.openAmount = rs.getBigDecimal("open_amount");
+            totals.totalProducts = rs.getLong("total_products");
+            totals.activeProducts = rs.getLong("active_products");
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.farm_marketplace.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Helpers for building and matching HTTP entity tags
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * Strong entity tag from a hash of the JSON body, so it changes with every field the
+     * client sees, including ones joined from other entities that do not bump its version
+     */
+    public static String forBody(ObjectMapper objectMapper, Object body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(objectMapper.writeValueAsBytes(body));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize response for its ETag", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Whether an If-None-Match header value matches the given tag
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.farm_marketplace.util;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Small size-bounded, least-recently-used map with hit/miss/eviction counters.
+ * With a time to live, an entry is dropped once it is older than that, counted
+ * from when its load started. All operations are synchronized; keep values
+ * immutable or treat them as read-only.
+ */
+public class LruCache<K, V> {
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final LongSupplier ticker;
+    private final LinkedHashMap<K, Timed<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Bumped on every invalidation so a load that raced with a change is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public LruCache(int maxEntries) {
+        this(maxEntries, Duration.ZERO);
+    }
+
+    /**
+     * Cache whose entries also expire after timeToLive; zero means never
+     */
+    public LruCache(int maxEntries, Duration timeToLive) {
+        this(maxEntries, timeToLive, System::nanoTime);
+    }
+
+    LruCache(int maxEntries, Duration timeToLive, LongSupplier ticker) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("timeToLive must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.ticker = ticker;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Timed<V>> eldest) {
+                if (size() > LruCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        V value = live(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Cached value, or load it outside the lock and cache the result
+     * when no invalidation happened while it was loading
+     */
+    public V getOrLoad(K key, Function<K, V> loader) {
+        return getOrLoad(key, loader, value -> true);
+    }
+
+    /**
+     * Like {@link #getOrLoad(Object, Function)}, caching the loaded value only if it is accepted
+     */
+    public V getOrLoad(K key, Function<K, V> loader, Predicate<V> cacheable) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = invalidations.get();
+        long loadedAt = ticker.getAsLong();
+        V loaded = loader.apply(key);
+        synchronized (this) {
+            if (loaded != null && invalidations.get() == stamp && cacheable.test(loaded)) {
+                entries.put(key, new Timed<>(loaded, loadedAt));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Cached values of all keys, loading the missing ones with a single loader call.
+     * Keys the loader does not return are absent from the result.
+     */
+    public Map<K, V> getAllOrLoad(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+        Map<K, V> found = new HashMap<>();
+        Set<K> missing = new LinkedHashSet<>();
+        synchronized (this) {
+            for (K key : keys) {
+                V value = get(key);
+                if (value != null) {
+                    found.put(key, value);
+                } else {
+                    missing.add(key);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        long stamp = invalidations.get();
+        long loadedAt = ticker.getAsLong();
+        Map<K, V> loaded = loader.apply(missing);
+        synchronized (this) {
+            if (invalidations.get() == stamp) {
+                loaded.forEach((key, value) -> entries.put(key, new Timed<>(value, loadedAt)));
+            }
+        }
+        found.putAll(loaded);
+        return found;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Timed<>(value, ticker.getAsLong()));
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations.incrementAndGet();
+        entries.remove(key);
+    }
+
+    /**
+     * Drop every entry holding the value; a scan of the whole cache
+     */
+    public synchronized void invalidateValue(V value) {
+        invalidations.incrementAndGet();
+        entries.values().removeIf(entry -> Objects.equals(entry.value, value));
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Value of an entry that has not expired; an expired one is removed. Caller holds the lock.
+     */
+    private V live(K key) {
+        Timed<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (timeToLiveNanos > 0 && ticker.getAsLong() - entry.writtenAt >= timeToLiveNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private record Timed<V>(V value, long writtenAt) {
+    }
+}
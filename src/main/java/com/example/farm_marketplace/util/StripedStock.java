@@ -0,0 +1,100 @@
+package com.example.farm_marketplace.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stock counter split over several padded cells so concurrent reservations
+ * usually touch different cache lines. A reservation takes from the caller's
+ * home cell with a CAS and only falls back to a lock when no single cell holds
+ * enough, in which case all cells are gathered, charged and spread out again.
+ * The sum of all cells never goes below zero.
+ */
+public class StripedStock {
+    // 8 longs = one 64-byte cache line between used cells
+    private static final int PADDING = 8;
+
+    private final int stripes;
+    private final AtomicLongArray cells;
+
+    public StripedStock(int stripes, long initial) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        reset(initial);
+    }
+
+    /**
+     * Take amount from the stock, or leave it unchanged and return false when there is not enough
+     */
+    public boolean tryReserve(long amount) {
+        int home = homeStripe();
+        for (int i = 0; i < stripes; i++) {
+            int cell = ((home + i) % stripes) * PADDING;
+            long current;
+            while ((current = cells.get(cell)) >= amount) {
+                if (cells.compareAndSet(cell, current, current - amount)) {
+                    return true;
+                }
+            }
+        }
+        return reserveAcrossStripes(amount);
+    }
+
+    /**
+     * Give amount back to the stock
+     */
+    public void release(long amount) {
+        cells.addAndGet(homeStripe() * PADDING, amount);
+    }
+
+    /**
+     * Current total; only exact when no reservation is in progress
+     */
+    public long available() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.get(i * PADDING);
+        }
+        return total;
+    }
+
+    /**
+     * Replace the stock with a new total
+     */
+    public synchronized void reset(long total) {
+        drain();
+        spread(total);
+    }
+
+    private synchronized boolean reserveAcrossStripes(long amount) {
+        long total = drain();
+        if (total < amount) {
+            spread(total);
+            return false;
+        }
+        spread(total - amount);
+        return true;
+    }
+
+    private long drain() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.getAndSet(i * PADDING, 0);
+        }
+        return total;
+    }
+
+    private void spread(long total) {
+        long share = total / stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.addAndGet(i * PADDING, i == 0 ? share + total % stripes : share);
+        }
+    }
+
+    private int homeStripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id ^ (id >>> 16)) % stripes);
+    }
+}
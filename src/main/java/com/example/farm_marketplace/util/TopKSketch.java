@@ -0,0 +1,191 @@
+package com.example.farm_marketplace.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Approximate top-K of a stream of long ids with exponential time decay.
+ * Counts live in a count-min sketch (conservative update); a min-heap keeps the
+ * K ids with the highest estimates. Decay uses a moving landmark: new weight is
+ * inflated by e^(lambda * (now - landmark)) instead of shrinking old counts, so
+ * decay never reorders the heap. Counts are rescaled once the inflation grows large.
+ * Memory is fixed at depth * width counters plus K heap entries.
+ */
+public class TopKSketch {
+    private static final int SNAPSHOT_VERSION = 1;
+    // Rescale before e^exponent can lose precision against fresh weights
+    private static final double MAX_EXPONENT = 40.0;
+
+    private final int depth;
+    private final int width;
+    private final int k;
+    private final double lambdaPerMilli;
+    private final double[] counts;
+
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingDouble(c -> c.score));
+    private final Map<Long, Candidate> candidates = new HashMap<>();
+    private long landmarkMillis;
+    private List<Long> ranking = List.of();
+    private boolean rankingStale;
+
+    public TopKSketch(int depth, int width, int k, long halfLifeMillis, long nowMillis) {
+        if (depth < 1 || width < 1 || k < 1 || halfLifeMillis < 1) {
+            throw new IllegalArgumentException("depth, width, k and half-life must be positive");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.k = k;
+        this.lambdaPerMilli = Math.log(2) / halfLifeMillis;
+        this.counts = new double[depth * width];
+        this.landmarkMillis = nowMillis;
+    }
+
+    /**
+     * Count one occurrence of an id at the given time
+     */
+    public synchronized void add(long id, double weight, long nowMillis) {
+        double exponent = lambdaPerMilli * (nowMillis - landmarkMillis);
+        if (exponent > MAX_EXPONENT) {
+            rescale(nowMillis);
+            exponent = 0;
+        }
+        double inflated = weight * Math.exp(exponent);
+
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[slot(row, id)]);
+        }
+        double updated = estimate + inflated;
+        for (int row = 0; row < depth; row++) {
+            int slot = slot(row, id);
+            counts[slot] = Math.max(counts[slot], updated);
+        }
+
+        Candidate candidate = candidates.get(id);
+        if (candidate != null) {
+            heap.remove(candidate);
+            candidate.score = updated;
+            heap.add(candidate);
+        } else if (heap.size() < k) {
+            offer(id, updated);
+        } else if (updated > heap.peek().score) {
+            candidates.remove(heap.poll().id);
+            offer(id, updated);
+        } else {
+            return;
+        }
+        rankingStale = true;
+    }
+
+    /**
+     * Up to limit ids, highest decayed count first
+     */
+    public synchronized List<Long> top(int limit) {
+        if (rankingStale) {
+            List<Candidate> sorted = new ArrayList<>(heap);
+            sorted.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+            ranking = sorted.stream().map(c -> c.id).toList();
+            rankingStale = false;
+        }
+        return ranking.size() <= limit ? ranking : ranking.subList(0, limit);
+    }
+
+    public synchronized boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeInt(depth);
+        out.writeInt(width);
+        out.writeInt(k);
+        out.writeLong(landmarkMillis);
+        for (double count : counts) {
+            out.writeDouble(count);
+        }
+        out.writeInt(heap.size());
+        for (Candidate candidate : heap) {
+            out.writeLong(candidate.id);
+            out.writeDouble(candidate.score);
+        }
+    }
+
+    /**
+     * Read a sketch written by writeTo; returns null when it was written with other dimensions
+     */
+    public static TopKSketch readFrom(DataInputStream in, int depth, int width, int k,
+                                      long halfLifeMillis) throws IOException {
+        int version = in.readInt();
+        int storedDepth = in.readInt();
+        int storedWidth = in.readInt();
+        in.readInt(); // k of the writer; the heap is cut to this sketch's k
+        long landmark = in.readLong();
+        boolean compatible = version == SNAPSHOT_VERSION && storedDepth == depth && storedWidth == width;
+
+        TopKSketch sketch = new TopKSketch(depth, width, k, halfLifeMillis, landmark);
+        for (int i = 0; i < storedDepth * storedWidth; i++) {
+            double count = in.readDouble();
+            if (compatible) {
+                sketch.counts[i] = count;
+            }
+        }
+        int entries = in.readInt();
+        List<Candidate> stored = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            stored.add(new Candidate(in.readLong(), in.readDouble()));
+        }
+        if (!compatible) {
+            return null;
+        }
+        stored.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        stored.stream().limit(k).forEach(c -> sketch.offer(c.id, c.score));
+        sketch.rankingStale = true;
+        return sketch;
+    }
+
+    private void offer(long id, double score) {
+        Candidate candidate = new Candidate(id, score);
+        candidates.put(id, candidate);
+        heap.add(candidate);
+    }
+
+    private void rescale(long nowMillis) {
+        double factor = Math.exp(-lambdaPerMilli * (nowMillis - landmarkMillis));
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] *= factor;
+        }
+        // Uniform scaling keeps the heap order
+        for (Candidate candidate : heap) {
+            candidate.score *= factor;
+        }
+        landmarkMillis = nowMillis;
+    }
+
+    private int slot(int row, long id) {
+        return row * width + (int) Math.floorMod(mix(id + (row + 1) * 0x9E3779B97F4A7C15L), (long) width);
+    }
+
+    /**
+     * 64-bit finalizer of MurmurHash3
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class Candidate {
+        private final long id;
+        private double score;
+
+        private Candidate(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- Hibernate 6 generated orders_status_check from the statuses known when the table was
+-- created, and ddl-auto=update never rewrites it, so EXPIRED was rejected.
+ALTER TABLE orders DROP CONSTRAINT IF EXISTS orders_status_check;
+ALTER TABLE orders ADD CONSTRAINT orders_status_check
+    CHECK (status IN ('PENDING', 'CONFIRMED', 'REJECTED', 'CANCELLED', 'COMPLETED', 'EXPIRED'));
@@ -0,0 +1,5 @@
+-- Keyset pagination over the browsable catalog. Hibernate cannot express a partial
+-- index, and earlier runs let it create a full one under the same name.
+DROP INDEX IF EXISTS idx_products_created_id;
+CREATE INDEX idx_products_created_id ON products(created_at DESC, id DESC)
+    WHERE active = true AND qty_available > 0;
@@ -53,4 +53,64 @@ CREATE TABLE IF NOT EXISTS order_items (
 CREATE INDEX idx_products_farmer ON products(farmer_id);
 CREATE INDEX idx_orders_buyer ON orders(buyer_id);
 CREATE INDEX idx_orders_farmer ON orders(farmer_id);
-CREATE INDEX idx_order_items_order ON order_items(order_id);
\ No newline at end of file
+CREATE INDEX idx_order_items_order ON order_items(order_id);
+-- Catalog change feed: changed products and deletions since a position
+CREATE INDEX IF NOT EXISTS idx_products_updated_id ON products(updated_at, id);
+CREATE TABLE IF NOT EXISTS product_tombstones (
+    product_id BIGINT PRIMARY KEY,
+    farmer_id BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_product_tombstones_deleted_id ON product_tombstones(deleted_at, product_id);
+-- Write-behind log of stock changes for ledger-managed products
+CREATE TABLE IF NOT EXISTS inventory_deltas (
+    id BIGSERIAL PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    delta NUMERIC(10,3) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+-- Stored first responses of requests sent with an Idempotency-Key
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(400) PRIMARY KEY,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_body TEXT,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires ON idempotency_keys(expires_at);
+-- Scan for stale pending orders
+CREATE INDEX IF NOT EXISTS idx_orders_status_created ON orders(status, created_at);
+-- Keyset pagination over order and sales history
+CREATE INDEX IF NOT EXISTS idx_orders_buyer_created_id ON orders(buyer_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_orders_farmer_created_id ON orders(farmer_id, created_at, id);
+-- Dashboard counters per user, maintained with every order and product change
+CREATE TABLE IF NOT EXISTS user_stats (
+    user_id BIGINT PRIMARY KEY,
+    pending_orders BIGINT NOT NULL DEFAULT 0,
+    confirmed_orders BIGINT NOT NULL DEFAULT 0,
+    rejected_orders BIGINT NOT NULL DEFAULT 0,
+    cancelled_orders BIGINT NOT NULL DEFAULT 0,
+    completed_orders BIGINT NOT NULL DEFAULT 0,
+    expired_orders BIGINT NOT NULL DEFAULT 0,
+    completed_amount NUMERIC(14,2) NOT NULL DEFAULT 0,
+    open_amount NUMERIC(14,2) NOT NULL DEFAULT 0,
+    total_products BIGINT NOT NULL DEFAULT 0,
+    active_products BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP
+);
+-- Completed sales per product in DAY, WEEK and MONTH buckets
+CREATE TABLE IF NOT EXISTS sales_rollups (
+    farmer_id BIGINT NOT NULL,
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start DATE NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity NUMERIC(14,3) NOT NULL,
+    revenue NUMERIC(14,2) NOT NULL,
+    order_count BIGINT NOT NULL,
+    PRIMARY KEY (farmer_id, granularity, bucket_start, product_id)
+);
+CREATE TABLE IF NOT EXISTS sales_rollup_state (
+    id INT PRIMARY KEY,
+    compacted_through DATE NOT NULL
+);
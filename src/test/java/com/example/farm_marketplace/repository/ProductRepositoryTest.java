@@ -0,0 +1,123 @@
+package com.example.farm_marketplace.repository;
+
+import com.example.farm_marketplace.entity.Product;
+import com.example.farm_marketplace.entity.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the product read paths against N+1 loading of Product.farmer:
+ * every listing must materialize products and their farmers in one statement.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.sql.init.mode=never",
+		"spring.flyway.enabled=false"
+})
+class ProductRepositoryTest {
+
+	private static final int PRODUCT_COUNT = 5;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private Statistics statistics;
+	private User farmer;
+	private final List<Long> productIds = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		farmer = entityManager.persist(User.builder()
+				.name("Ravi")
+				.email("ravi@example.com")
+				.password("secret")
+				.role("FARMER")
+				.state("Tamil Nadu")
+				.district("Erode")
+				.phone("9999999999")
+				.build());
+
+		for (int i = 0; i < PRODUCT_COUNT; i++) {
+			Product product = entityManager.persist(Product.builder()
+					.farmer(farmer)
+					.name("Tomato " + i)
+					.price(new BigDecimal("25.00"))
+					.unit("kg")
+					.qtyAvailable(new BigDecimal("10.000"))
+					.active(true)
+					.build());
+			productIds.add(product.getId());
+		}
+
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void findByFarmerIdFetchesFarmerInOneStatement() {
+		List<Product> products = productRepository.findByFarmerId(farmer.getId());
+		products.forEach(this::readFarmer);
+
+		assertThat(products).hasSize(PRODUCT_COUNT);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void findAvailableProductsAfterFetchesFarmerInOneStatement() {
+		List<Product> products = productRepository.findAvailableProductsAfter(
+				LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE, PageRequest.of(0, 3));
+		products.forEach(this::readFarmer);
+
+		assertThat(products).hasSize(3);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void findAllWithFarmerByIdInFetchesFarmerInOneStatement() {
+		List<Product> products = productRepository.findAllWithFarmerByIdIn(productIds);
+		products.forEach(this::readFarmer);
+
+		assertThat(products).hasSize(PRODUCT_COUNT);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void findWithFarmerByIdFetchesFarmerInOneStatement() {
+		Product product = productRepository.findWithFarmerById(productIds.get(0)).orElseThrow();
+		readFarmer(product);
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	/**
+	 * Touch the same farmer fields ProductService.mapToResponse reads
+	 */
+	private void readFarmer(Product product) {
+		User owner = product.getFarmer();
+		assertThat(owner.getName()).isEqualTo("Ravi");
+		assertThat(owner.getState()).isNotNull();
+		assertThat(owner.getDistrict()).isNotNull();
+		assertThat(owner.getPhone()).isNotNull();
+	}
+}
@@ -0,0 +1,108 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.ProductRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * CSV import records: quoted fields may hold commas, doubled quotes and line breaks,
+ * and errors must point at the line where the record starts.
+ */
+class ProductImportParsingTest {
+
+	@Test
+	void quotedFieldsKeepCommasAndEscapedQuotes() {
+		ProductImportService.CsvRowParser parser = parser("name,description,price,qtyAvailable");
+
+		ProductRequest request = parser.parse("\"Tomato, cherry\",\"The \"\"sweet\"\" kind\",25.50,10");
+
+		assertThat(request.getName()).isEqualTo("Tomato, cherry");
+		assertThat(request.getDescription()).isEqualTo("The \"sweet\" kind");
+		assertThat(request.getPrice()).isEqualByComparingTo("25.50");
+		assertThat(request.getQtyAvailable()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	void columnsAreMatchedByHeaderName() {
+		ProductImportService.CsvRowParser parser = parser("qty_available,Price,NAME,unit");
+
+		ProductRequest request = parser.parse("4,12,Onion,bunch");
+
+		assertThat(request.getName()).isEqualTo("Onion");
+		assertThat(request.getPrice()).isEqualByComparingTo("12");
+		assertThat(request.getQtyAvailable()).isEqualByComparingTo("4");
+		assertThat(request.getUnit()).isEqualTo("bunch");
+	}
+
+	@Test
+	void unterminatedQuoteIsMalformed() {
+		ProductImportService.CsvRowParser parser = parser("name,price,qtyAvailable");
+
+		assertThatThrownBy(() -> parser.parse("\"Tomato,25,10"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("unterminated");
+	}
+
+	@Test
+	void quotedLineBreakContinuesTheRecord() throws IOException {
+		String csv = "name,description,price,qtyAvailable\n"
+				+ "Tomato,\"Picked today.\n\nKeep cool\",25,10\n"
+				+ "\n"
+				+ "Onion,plain,12,4\n";
+		ProductImportService.RecordReader records = records(csv, true);
+
+		assertThat(records.next()).isEqualTo("name,description,price,qtyAvailable");
+		String tomato = records.next();
+		assertThat(records.line()).isEqualTo(2);
+		assertThat(records.next()).isEqualTo("Onion,plain,12,4");
+		assertThat(records.line()).isEqualTo(6);
+		assertThat(records.next()).isNull();
+
+		ProductRequest request = parser("name,description,price,qtyAvailable").parse(tomato);
+		assertThat(request.getDescription()).isEqualTo("Picked today.\n\nKeep cool");
+	}
+
+	@Test
+	void strayQuoteDoesNotSwallowTheRestOfTheFile() throws IOException {
+		StringBuilder csv = new StringBuilder("\"broken,1,1\n");
+		for (int i = 0; i < 30; i++) {
+			csv.append("Row").append(i).append(",1,1\n");
+		}
+		ProductImportService.RecordReader records = records(csv.toString(), true);
+
+		List<String> read = new ArrayList<>();
+		for (String record; (record = records.next()) != null; ) {
+			read.add(record);
+		}
+		assertThat(read).hasSizeGreaterThan(1);
+		assertThat(read.get(read.size() - 1)).isEqualTo("Row29,1,1");
+	}
+
+	@Test
+	void byteOrderMarkAndBlankLinesAreSkipped() throws IOException {
+		ProductImportService.RecordReader records = records("\uFEFF{\"name\":\"a\"}\n\n  \n{\"name\":\"b\"}\n", false);
+
+		assertThat(records.next()).isEqualTo("{\"name\":\"a\"}");
+		assertThat(records.next()).isEqualTo("{\"name\":\"b\"}");
+		assertThat(records.line()).isEqualTo(4);
+		assertThat(records.next()).isNull();
+	}
+
+	private static ProductImportService.CsvRowParser parser(String header) {
+		ProductImportService.CsvRowParser parser = new ProductImportService.CsvRowParser();
+		parser.readHeader(header);
+		return parser;
+	}
+
+	private static ProductImportService.RecordReader records(String input, boolean csv) {
+		return new ProductImportService.RecordReader(new BufferedReader(new StringReader(input)), csv);
+	}
+}
@@ -0,0 +1,197 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.dto.ProductResponse;
+import com.example.farm_marketplace.entity.Product;
+import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.event.ProductChangedEvent;
+import com.example.farm_marketplace.repository.ProductRepository;
+import com.example.farm_marketplace.repository.UserRepository;
+import com.example.farm_marketplace.util.KeysetCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Placing an order deducts stock with JDBC while the order's persistence context still
+ * holds the products it validated. The index must re-read them after commit and see
+ * the new quantity, not the copy cached in that context.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.sql.init.mode=never",
+		"spring.flyway.enabled=false"
+})
+@Import({ProductSearchIndex.class, StockService.class, InventoryLedger.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductSearchIndexTest {
+
+	@Autowired
+	private ProductSearchIndex searchIndex;
+
+	@Autowired
+	private StockService stockService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private User farmer;
+	private Product product;
+
+	@BeforeEach
+	void setUp() {
+		farmer = userRepository.save(User.builder()
+				.name("Ravi")
+				.email("ravi@example.com")
+				.password("secret")
+				.role("FARMER")
+				.state("Tamil Nadu")
+				.district("Erode")
+				.phone("9999999999")
+				.build());
+		product = productRepository.save(Product.builder()
+				.farmer(farmer)
+				.name("Tomato")
+				.price(new BigDecimal("25.00"))
+				.unit("kg")
+				.qtyAvailable(new BigDecimal("10.000"))
+				.active(true)
+				.build());
+		searchIndex.rebuild();
+	}
+
+	@AfterEach
+	void tearDown() {
+		List<Long> ids = productRepository.findAll().stream().map(Product::getId).toList();
+		eventPublisher.publishEvent(new ProductChangedEvent(
+				farmer.getId(), ids, ProductChangedEvent.ChangeType.DELETED));
+		productRepository.deleteAll();
+		userRepository.deleteAll();
+	}
+
+	@Test
+	void placedOrderUpdatesIndexedQuantity() {
+		placeOrder(new BigDecimal("4"));
+
+		assertThat(search()).singleElement()
+				.extracting(ProductResponse::getQtyAvailable)
+				.satisfies(qty -> assertThat(qty).isEqualByComparingTo("6"));
+	}
+
+	@Test
+	void soldOutProductLeavesSearchResults() {
+		placeOrder(new BigDecimal("10"));
+
+		assertThat(search()).isEmpty();
+	}
+
+	@Test
+	void pagesVisitEveryMatchNewestFirstWithUndatedLast() {
+		List<Long> created = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			created.add(productRepository.save(Product.builder()
+					.farmer(farmer)
+					.name("Tomato " + i)
+					.price(new BigDecimal("20.00"))
+					.unit("kg")
+					.qtyAvailable(BigDecimal.ONE)
+					.active(true)
+					.build()).getId());
+		}
+		jdbcTemplate.update("UPDATE products SET created_at = NULL WHERE id = ?", created.get(3));
+		searchIndex.rebuild();
+
+		List<ProductResponse> seen = new ArrayList<>();
+		KeysetCursor cursor = KeysetCursor.START;
+		List<ProductResponse> page;
+		do {
+			page = searchIndex.search("tomato", null, null, cursor, 2);
+			seen.addAll(page);
+			if (!page.isEmpty()) {
+				cursor = KeysetCursor.decode(ProductSearchIndex.cursorAt(page.get(page.size() - 1)).encode());
+			}
+		} while (page.size() == 2);
+
+		assertThat(seen).extracting(ProductResponse::getId).hasSize(5).doesNotHaveDuplicates();
+		assertThat(seen.get(4).getId()).isEqualTo(created.get(3));
+		for (int i = 1; i < 4; i++) {
+			ProductResponse newer = seen.get(i - 1);
+			ProductResponse older = seen.get(i);
+			assertThat(newer.getCreatedAt()).isAfterOrEqualTo(older.getCreatedAt());
+			if (newer.getCreatedAt().equals(older.getCreatedAt())) {
+				assertThat(newer.getId()).isGreaterThan(older.getId());
+			}
+		}
+	}
+
+	@Test
+	void staleCopyDoesNotReplaceNewerOne() {
+		ProductResponse beforeOrder = search().get(0);
+		placeOrder(new BigDecimal("4"));
+		ProductResponse afterOrder = search().get(0);
+
+		// A reload that read the product before the order committed but arrives last
+		searchIndex.put(beforeOrder, Long.MAX_VALUE);
+		assertThat(search()).singleElement()
+				.extracting(ProductResponse::getQtyAvailable)
+				.satisfies(qty -> assertThat(qty).isEqualByComparingTo("6"));
+
+		// Same version, e.g. an older read of the farmer's profile, from an earlier read
+		searchIndex.put(ProductResponse.builder()
+				.id(afterOrder.getId())
+				.version(afterOrder.getVersion())
+				.name(afterOrder.getName())
+				.farmerState(afterOrder.getFarmerState())
+				.farmerDistrict("Salem")
+				.qtyAvailable(afterOrder.getQtyAvailable())
+				.active(true)
+				.createdAt(afterOrder.getCreatedAt())
+				.build(), 0L);
+		assertThat(searchIndex.search("tomato", null, "Salem", KeysetCursor.START, 10)).isEmpty();
+		assertThat(searchIndex.search("tomato", null, "Erode", KeysetCursor.START, 10)).hasSize(1);
+	}
+
+	/**
+	 * The steps OrderService.placeOrder takes: load the products, deduct with JDBC, publish, commit
+	 */
+	private void placeOrder(BigDecimal quantity) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			List<Product> loaded = productRepository.findAllById(List.of(product.getId()));
+			assertThat(loaded).hasSize(1);
+			assertThat(stockService.deduct(Map.of(product.getId(), quantity))).isEmpty();
+			eventPublisher.publishEvent(new ProductChangedEvent(
+					farmer.getId(), List.of(product.getId()), ProductChangedEvent.ChangeType.STOCK));
+		});
+	}
+
+	private List<ProductResponse> search() {
+		return searchIndex.search("tomato", null, null, KeysetCursor.START, 10);
+	}
+}
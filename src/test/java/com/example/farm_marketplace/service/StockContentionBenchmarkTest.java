@@ -0,0 +1,155 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.entity.Product;
+import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.repository.ProductRepository;
+import com.example.farm_marketplace.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Orders per second on one hot product under many threads: reservations through the
+ * inventory ledger against the direct conditional UPDATE, where every order waits for
+ * the product row's lock until the order before it commits. Each order is a transaction
+ * of its own, as in order placement.
+ * Needs the PostgreSQL database from application.properties; run with mvn test -Pbenchmark
+ */
+@SpringBootTest
+@Tag("benchmark")
+class StockContentionBenchmarkTest {
+
+	private static final int THREADS = 32;
+	private static final long RUN_SECONDS = 10;
+	private static final BigDecimal STOCK = new BigDecimal("1000000000");
+
+	@Autowired
+	private StockService stockService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private User farmer;
+
+	@BeforeEach
+	void setUp() {
+		farmer = userRepository.save(User.builder()
+				.name("Benchmark farmer")
+				.email("benchmark-" + System.nanoTime() + "@example.com")
+				.password("secret")
+				.role("FARMER")
+				.build());
+	}
+
+	@AfterEach
+	void tearDown() {
+		productRepository.deleteAll(productRepository.findByFarmerId(farmer.getId()));
+		userRepository.delete(farmer);
+	}
+
+	@Test
+	void ledgerAgainstConditionalUpdateOnHotProduct() throws Exception {
+		Long directId = hotProduct("Direct tomato");
+		long directOrders = measure(directId, stockService);
+
+		Long ledgerId = hotProduct("Ledger tomato");
+		InventoryLedger ledger = new InventoryLedger(true, List.of(ledgerId), 16, 200,
+				jdbcTemplate, namedJdbcTemplate, eventPublisher, dataSource);
+		ledger.start();
+		long ledgerOrders;
+		try {
+			ledgerOrders = measure(ledgerId, new StockService(jdbcTemplate, ledger));
+		} finally {
+			ledger.stop();
+		}
+
+		double directRate = directOrders / (double) RUN_SECONDS;
+		double ledgerRate = ledgerOrders / (double) RUN_SECONDS;
+		System.out.printf("%d threads on one product: conditional UPDATE %,.0f orders/s, ledger %,.0f orders/s (%.1fx)%n",
+				THREADS, directRate, ledgerRate, ledgerRate / directRate);
+
+		// Every order was deducted exactly once on both paths, the ledger's once flushed
+		assertThat(qtyAvailable(directId)).isEqualByComparingTo(STOCK.subtract(BigDecimal.valueOf(directOrders)));
+		assertThat(qtyAvailable(ledgerId)).isEqualByComparingTo(STOCK.subtract(BigDecimal.valueOf(ledgerOrders)));
+	}
+
+	/**
+	 * Orders of one unit placed by all threads within the run time
+	 */
+	private long measure(Long productId, StockService stock) throws Exception {
+		AtomicLong placed = new AtomicLong();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(RUN_SECONDS);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(pool.submit(() -> {
+					long local = 0;
+					while (System.nanoTime() < deadline) {
+						List<Long> failed = transactionTemplate.execute(status ->
+								stock.deduct(Map.of(productId, BigDecimal.ONE)));
+						assertThat(failed).isEmpty();
+						local++;
+					}
+					placed.addAndGet(local);
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return placed.get();
+	}
+
+	private Long hotProduct(String name) {
+		return productRepository.save(Product.builder()
+				.farmer(farmer)
+				.name(name)
+				.price(new BigDecimal("25.00"))
+				.unit("kg")
+				.qtyAvailable(STOCK)
+				.active(true)
+				.build()).getId();
+	}
+
+	private BigDecimal qtyAvailable(Long productId) {
+		return jdbcTemplate.queryForObject("SELECT qty_available FROM products WHERE id = ?", BigDecimal.class, productId);
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.farm_marketplace.service;
+
+import com.example.farm_marketplace.entity.User;
+import com.example.farm_marketplace.exception.ResourceNotFoundException;
+import com.example.farm_marketplace.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Ids cached by email must be dropped once a change to the user commits.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.sql.init.mode=never",
+		"spring.flyway.enabled=false"
+})
+@Import(UserService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceTest {
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		user = userRepository.save(User.builder()
+				.name("Meena")
+				.email("meena@example.com")
+				.password("secret")
+				.role("BUYER")
+				.build());
+	}
+
+	@AfterEach
+	void tearDown() {
+		userRepository.deleteAll();
+	}
+
+	@Test
+	void changedEmailNoLongerResolvesToTheUser() {
+		assertThat(userService.findIdByEmail("meena@example.com")).isEqualTo(user.getId());
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+				userRepository.findById(user.getId()).orElseThrow().setEmail("meena@farm.example"));
+
+		assertThatThrownBy(() -> userService.findIdByEmail("meena@example.com"))
+				.isInstanceOf(ResourceNotFoundException.class);
+		assertThat(userService.findIdByEmail("meena@farm.example")).isEqualTo(user.getId());
+	}
+
+	@Test
+	void deletedUserNoLongerResolves() {
+		assertThat(userService.findIdByEmail("meena@example.com")).isEqualTo(user.getId());
+
+		userRepository.deleteById(user.getId());
+
+		assertThatThrownBy(() -> userService.findIdByEmail("meena@example.com"))
+				.isInstanceOf(ResourceNotFoundException.class);
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.farm_marketplace.util;
+
+import com.example.farm_marketplace.dto.ProductResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A product's ETag must change when the farmer details it embeds change, even though
+ * the product's own version does not.
+ */
+class ETagsTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+	@Test
+	void tagChangesWithEmbeddedFarmerDetails() {
+		ProductResponse before = product("Ravi", "9000000001");
+		ProductResponse after = product("Ravi", "9000000002");
+
+		String etag = ETags.forBody(objectMapper, before);
+
+		assertThat(ETags.forBody(objectMapper, product("Ravi", "9000000001"))).isEqualTo(etag);
+		assertThat(ETags.forBody(objectMapper, after)).isNotEqualTo(etag);
+		assertThat(ETags.matches("W/" + etag, etag)).isTrue();
+	}
+
+	private static ProductResponse product(String farmerName, String farmerPhone) {
+		return ProductResponse.builder()
+				.id(42L)
+				.farmerId(7L)
+				.farmerName(farmerName)
+				.farmerPhone(farmerPhone)
+				.name("Tomatoes")
+				.price(new BigDecimal("30.00"))
+				.version(3L)
+				.build();
+	}
+}
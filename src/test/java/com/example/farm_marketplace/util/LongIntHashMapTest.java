@@ -0,0 +1,56 @@
+package com.example.farm_marketplace.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The primitive map must behave like a Map<Long, Integer> of running totals, through resizes.
+ */
+class LongIntHashMapTest {
+
+	@Test
+	void addToAccumulatesPerKey() {
+		LongIntHashMap map = new LongIntHashMap();
+		assertThat(map.addTo(7, 2)).isEqualTo(2);
+		assertThat(map.addTo(7, 3)).isEqualTo(5);
+		map.addTo(9, 1);
+
+		assertThat(map.get(7)).isEqualTo(5);
+		assertThat(map.get(9)).isEqualTo(1);
+		assertThat(map.get(8)).isZero();
+		assertThat(map.containsKey(8)).isFalse();
+		assertThat(map.size()).isEqualTo(2);
+	}
+
+	@Test
+	void zeroAndNegativeKeysAreOrdinaryKeys() {
+		LongIntHashMap map = new LongIntHashMap();
+		map.addTo(0, 4);
+		map.addTo(-3, 1);
+
+		assertThat(map.containsKey(0)).isTrue();
+		assertThat(map.get(0)).isEqualTo(4);
+		assertThat(map.get(-3)).isEqualTo(1);
+		assertThat(map.size()).isEqualTo(2);
+	}
+
+	@Test
+	void matchesABoxedMapAcrossResizes() {
+		LongIntHashMap map = new LongIntHashMap(2);
+		Map<Long, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 10_000; i++) {
+			long key = (i * 7919L) % 3_001;
+			map.addTo(key, 1);
+			expected.merge(key, 1, Integer::sum);
+		}
+
+		Map<Long, Integer> actual = new HashMap<>();
+		map.forEach(actual::put);
+		assertThat(actual).isEqualTo(expected);
+		assertThat(map.size()).isEqualTo(expected.size());
+	}
+}
@@ -0,0 +1,71 @@
+package com.example.farm_marketplace.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Entries must expire once older than the time to live, counted from the start of their load.
+ */
+class LruCacheTest {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	void entryExpiresAfterTimeToLive() {
+		LruCache<Long, String> cache = new LruCache<>(10, Duration.ofSeconds(30), now::get);
+		AtomicInteger loads = new AtomicInteger();
+
+		assertThat(cache.getOrLoad(1L, id -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+		now.addAndGet(Duration.ofSeconds(29).toNanos());
+		assertThat(cache.getOrLoad(1L, id -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+
+		now.addAndGet(Duration.ofSeconds(1).toNanos());
+		assertThat(cache.get(1L)).isNull();
+		assertThat(cache.getOrLoad(1L, id -> "v" + loads.incrementAndGet())).isEqualTo("v2");
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	void timeToLiveCountsFromTheStartOfTheLoad() {
+		LruCache<Long, String> cache = new LruCache<>(10, Duration.ofSeconds(30), now::get);
+
+		cache.getAllOrLoad(Set.of(1L, 2L), ids -> {
+			now.addAndGet(Duration.ofSeconds(20).toNanos());
+			return Map.of(1L, "a", 2L, "b");
+		});
+		now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+		assertThat(cache.get(1L)).isNull();
+		assertThat(cache.get(2L)).isNull();
+	}
+
+	@Test
+	void zeroTimeToLiveNeverExpires() {
+		LruCache<Long, String> cache = new LruCache<>(10, Duration.ZERO, now::get);
+		cache.put(1L, "a");
+
+		now.addAndGet(Duration.ofDays(365).toNanos());
+
+		assertThat(cache.get(1L)).isEqualTo("a");
+	}
+
+	@Test
+	void leastRecentlyUsedIsEvictedBeyondMaxEntries() {
+		LruCache<Long, String> cache = new LruCache<>(2);
+		cache.put(1L, "a");
+		cache.put(2L, "b");
+		cache.get(1L);
+		cache.put(3L, "c");
+
+		assertThat(cache.get(2L)).isNull();
+		assertThat(cache.get(1L)).isEqualTo("a");
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,114 @@
+package com.example.farm_marketplace.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The ledger's striped counter must never hand out more stock than it holds,
+ * however many threads reserve at once.
+ */
+class StripedStockTest {
+
+	private static final int THREADS = 16;
+
+	@Test
+	void concurrentReservationsNeverOversell() throws Exception {
+		StripedStock stock = new StripedStock(8, 10_000);
+		AtomicLong granted = new AtomicLong();
+
+		runConcurrently(() -> {
+			while (stock.tryReserve(3)) {
+				granted.addAndGet(3);
+			}
+		});
+
+		assertThat(granted.get()).isLessThanOrEqualTo(10_000);
+		assertThat(granted.get() + stock.available()).isEqualTo(10_000);
+		assertThat(stock.available()).isLessThan(3);
+	}
+
+	@Test
+	void reservationLargerThanOneStripeGathersAllStripes() {
+		StripedStock stock = new StripedStock(8, 800);
+
+		assertThat(stock.tryReserve(750)).isTrue();
+		assertThat(stock.available()).isEqualTo(50);
+		assertThat(stock.tryReserve(51)).isFalse();
+		assertThat(stock.available()).isEqualTo(50);
+	}
+
+	@Test
+	void releasedStockCanBeReservedAgain() {
+		StripedStock stock = new StripedStock(4, 10);
+
+		assertThat(stock.tryReserve(10)).isTrue();
+		assertThat(stock.tryReserve(1)).isFalse();
+		stock.release(4);
+		assertThat(stock.tryReserve(4)).isTrue();
+		assertThat(stock.available()).isZero();
+	}
+
+	/**
+	 * Threads that reserve and give back stock at random, with amounts large enough to
+	 * force gathers across stripes, must leave exactly the stock they did not keep
+	 */
+	@Test
+	void concurrentReserveAndReleaseConserveStock() throws Exception {
+		StripedStock stock = new StripedStock(8, 5_000);
+		AtomicLong kept = new AtomicLong();
+
+		runConcurrently(() -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < 20_000; i++) {
+				long amount = 1 + random.nextInt(900);
+				if (stock.tryReserve(amount)) {
+					if (random.nextBoolean()) {
+						stock.release(amount);
+					} else {
+						kept.addAndGet(amount);
+					}
+				}
+			}
+		});
+
+		assertThat(kept.get()).isLessThanOrEqualTo(5_000);
+		assertThat(stock.available()).isEqualTo(5_000 - kept.get());
+	}
+
+	@Test
+	void resetReplacesStockEvenAfterReservations() {
+		StripedStock stock = new StripedStock(4, 100);
+		assertThat(stock.tryReserve(60)).isTrue();
+
+		stock.reset(7);
+
+		assertThat(stock.available()).isEqualTo(7);
+		assertThat(stock.tryReserve(8)).isFalse();
+		assertThat(stock.tryReserve(7)).isTrue();
+		assertThat(stock.available()).isZero();
+	}
+
+	private static void runConcurrently(Runnable task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch ready = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(() -> {
+				ready.await();
+				task.run();
+				return null;
+			}));
+		}
+		ready.countDown();
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+	}
+}
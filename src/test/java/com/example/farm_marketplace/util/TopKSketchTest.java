@@ -0,0 +1,95 @@
+package com.example.farm_marketplace.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The sketch must surface the heaviest ids, let old activity fade, and survive a snapshot.
+ */
+class TopKSketchTest {
+
+	private static final long HOUR = 3_600_000L;
+
+	@Test
+	void heavyHittersRankAboveTheLongTail() {
+		TopKSketch sketch = new TopKSketch(4, 256, 3, 24 * HOUR, 0);
+		for (long id = 100; id < 1_100; id++) {
+			sketch.add(id, 1, 0);
+		}
+		for (int i = 0; i < 60; i++) {
+			sketch.add(1, 1, 0);
+		}
+		for (int i = 0; i < 45; i++) {
+			sketch.add(2, 1, 0);
+		}
+		for (int i = 0; i < 30; i++) {
+			sketch.add(3, 1, 0);
+		}
+
+		assertThat(sketch.top(3)).containsExactly(1L, 2L, 3L);
+		assertThat(sketch.top(1)).containsExactly(1L);
+	}
+
+	@Test
+	void recentActivityOutranksOlderActivity() {
+		TopKSketch sketch = new TopKSketch(4, 256, 2, HOUR, 0);
+		for (int i = 0; i < 100; i++) {
+			sketch.add(1, 1, 0);
+		}
+		// Ten half-lives later 100 old orders weigh less than 1 new one
+		long later = 10 * HOUR;
+		for (int i = 0; i < 5; i++) {
+			sketch.add(2, 1, later);
+		}
+
+		assertThat(sketch.top(2)).containsExactly(2L, 1L);
+	}
+
+	@Test
+	void rescalingKeepsTheRanking() {
+		TopKSketch sketch = new TopKSketch(4, 256, 2, HOUR, 0);
+		sketch.add(1, 1, 0);
+		sketch.add(1, 1, 0);
+		sketch.add(2, 1, 0);
+		// Far enough ahead to force a rescale on the next add
+		sketch.add(3, 0.000001, 100 * HOUR);
+
+		assertThat(sketch.top(2)).containsExactly(3L, 1L);
+	}
+
+	@Test
+	void snapshotRoundTripKeepsTheTopIds() throws IOException {
+		TopKSketch sketch = new TopKSketch(4, 256, 5, 24 * HOUR, 0);
+		for (long id = 1; id <= 5; id++) {
+			for (int i = 0; i < id * 10; i++) {
+				sketch.add(id, 1, 0);
+			}
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		sketch.writeTo(new DataOutputStream(bytes));
+		TopKSketch restored = TopKSketch.readFrom(
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 4, 256, 5, 24 * HOUR);
+
+		assertThat(restored).isNotNull();
+		assertThat(restored.top(5)).isEqualTo(List.of(5L, 4L, 3L, 2L, 1L));
+		restored.add(1, 100, 0);
+		assertThat(restored.top(1)).containsExactly(1L);
+	}
+
+	@Test
+	void snapshotWithOtherDimensionsIsDiscarded() throws IOException {
+		TopKSketch sketch = new TopKSketch(4, 256, 5, HOUR, 0);
+		sketch.add(1, 1, 0);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		sketch.writeTo(new DataOutputStream(bytes));
+
+		assertThat(TopKSketch.readFrom(
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 4, 512, 5, HOUR)).isNull();
+	}
+}